@@ -29,5 +29,16 @@ interface ActivationFunction
      * @return          the derivitive
      */
     double slopeForOutput(double output);
+
+    /**
+     * Returns the netpj+threshold at which f gives the specified output.
+     * f is required to be increasing in netpj+threshold,
+     * so outputs can be compared by comparing netpj+threshold instead.
+     *
+     * @param output    the node output
+     * @return          the netpj+threshold giving that output,
+     *                  or an infinity if the output is beyond f's range
+     */
+    double inverse(double output);
 }
 
@@ -0,0 +1,206 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Remembers a Network's answers to recent inputs,
+ * so repeated inputs skip the forward pass.
+ * <p>
+ * Inputs are keyed by their hash and compared in full,
+ * so a hit is always the exact answer.
+ * The least recently used answers are dropped beyond the capacity.
+ * The cache belongs to one Network instance:
+ * when the Network supplied changes, say after a ModelRegistry swap,
+ * every remembered answer is dropped.
+ * <p>
+ * Thread safe.
+ */
+public final class AnswerCache
+{
+    private final Supplier<Network> network;
+    private final int capacity;
+
+    // Guarded by this.
+    private final LinkedHashMap<Key, double[]> answers;
+    private Network owner;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Builds an AnswerCache.
+     * By default it holds 10,000 answers.
+     */
+    public static final class Builder
+    {
+        private Supplier<Network> network;
+        private int capacity = 10_000;
+
+        /**
+         * Specifies the Network whose answers are cached.
+         *
+         * @param net   the Network
+         * @return      a reference to this builder
+         */
+        public Builder withNetwork(Network net)
+        {
+            Objects.requireNonNull(net);
+            return withNetwork(()->net);
+        }
+
+        /**
+         * Specifies where to get the Network whose answers are cached,
+         * which is asked afresh on each call.
+         *
+         * @param network   supplies the Network
+         * @return          a reference to this builder
+         */
+        public Builder withNetwork(Supplier<Network> network)
+        {
+            this.network = Objects.requireNonNull(network);
+            return this;
+        }
+
+        /**
+         * Specifies the most answers remembered.
+         *
+         * @param capacity  the number of answers, at least 1
+         * @return          a reference to this builder
+         */
+        public Builder withCapacity(int capacity)
+        {
+            if(capacity < 1)
+                throw new IllegalArgumentException(
+                    "capacity must be >= 1, but was "+capacity);
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Builds the specified AnswerCache.
+         *
+         * @return the built AnswerCache
+         */
+        public AnswerCache build()
+        {
+            if(network == null)
+                throw new IllegalStateException("no network specified");
+            return new AnswerCache(this);
+        }
+    }
+
+    private AnswerCache(Builder builder)
+    {
+        network = builder.network;
+        capacity = builder.capacity;
+        answers = new LinkedHashMap<>(16, .75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the Network's answer for an input.
+     *
+     * @param input the input
+     * @return      a copy of the network output layer's outputs
+     */
+    public double[] answer(double[] input)
+    {
+        final Network net = network.get();
+        final Key key = new Key(input.clone());
+
+        double[] cached;
+        synchronized(this)
+        {
+            if(net != owner)
+            {
+                answers.clear();
+                owner = net;
+            }
+            cached = answers.get(key);
+        }
+        if(cached != null)
+        {
+            hits.increment();
+            return cached.clone();
+        }
+
+        misses.increment();
+        double[] answer = net.answer(key.values);
+        synchronized(this)
+        {
+            if(net == owner) answers.put(key, answer);
+        }
+        return answer.clone();
+    }
+
+    /**
+     * Returns the number of answers remembered.
+     *
+     * @return  the number of answers remembered
+     */
+    public synchronized int size()
+    {
+        return answers.size();
+    }
+
+    /**
+     * Returns the number of answers found in the cache.
+     *
+     * @return  the number of hits
+     */
+    public long hits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of answers that needed a forward pass.
+     *
+     * @return  the number of misses
+     */
+    public long misses()
+    {
+        return misses.sum();
+    }
+
+    private static final class Key
+    {
+        final double[] values;
+        final int hash;
+
+        Key(double[] values)
+        {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(this == o) return true;
+            if(o == null) return false;
+            if(getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return this.hash == that.hash &&
+                   Arrays.equals(this.values, that.values);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Vectors of zeros and ones, packed one bit per element.
+ * Each vector starts on a fresh long, so rows can be decoded independently.
+ */
+final class BitVectors implements Vectors
+{
+    private final int size;
+    private final int width;
+    private final int wordsPerRow;
+    private final long[] bits;
+
+    /**
+     * Constructs bit packed Vectors from an array.
+     *
+     * @param rows  the vectors, all of the same length
+     * @throws      IllegalArgumentException if any value is not 0 or 1
+     */
+    BitVectors(double[][] rows)
+    {
+        Objects.requireNonNull(rows);
+
+        size = rows.length;
+        width = Vectors.uniformWidth(rows);
+        wordsPerRow = (int) ((width + (long) Long.SIZE - 1) / Long.SIZE);
+        bits = new long[Vectors.elementCount(size, wordsPerRow)];
+        for(int row=0; row<size; row++)
+        {
+            for(int column=0; column<width; column++)
+            {
+                if(isSet(rows[row][column]))
+                {
+                    bits[row*wordsPerRow + column/Long.SIZE] |=
+                        1L << (column % Long.SIZE);
+                }
+            }
+        }
+    }
+
+    private static boolean isSet(double value)
+    {
+        if(value == 1) return true;
+        if(value == 0) return false;
+        throw new IllegalArgumentException("value is not binary: "+value);
+    }
+
+    @Override public int size()  { return size; }
+    @Override public int width() { return width; }
+
+    @Override
+    public Patterns.Encoding encoding()
+    {
+        return Patterns.Encoding.BIT;
+    }
+
+    @Override
+    public double get(int row, int column)
+    {
+        Objects.checkIndex(row, size);
+        Objects.checkIndex(column, width);
+        long word = bits[row*wordsPerRow + column/Long.SIZE];
+        return (word >>> (column % Long.SIZE)) & 1L;
+    }
+
+    @Override
+    public void copyRow(int row, double[] destination)
+    {
+        Objects.checkIndex(row, size);
+        final int start = row*wordsPerRow;
+        for(int column=0; column<width; column++)
+        {
+            long word = bits[start + column/Long.SIZE];
+            destination[column] = (word >>> (column % Long.SIZE)) & 1L;
+        }
+    }
+
+    //
+    // A set bit is a 1, so feeding these to the first layer
+    // is just summing the weights of the set bits.
+    //
+
+    @Override
+    public boolean isSparse()
+    {
+        return true;
+    }
+
+    @Override
+    public SparseVector sparseRow(int row)
+    {
+        Objects.checkIndex(row, size);
+        final int start = row*wordsPerRow;
+
+        int count = 0;
+        for(int w=0; w<wordsPerRow; w++)
+        {
+            count += Long.bitCount(bits[start+w]);
+        }
+
+        int[] indexes = new int[count];
+        double[] values = new double[count];
+        int k = 0;
+        for(int w=0; w<wordsPerRow; w++)
+        {
+            for(long word=bits[start+w]; word != 0; word &= word-1)
+            {
+                indexes[k] = w*Long.SIZE + Long.numberOfTrailingZeros(word);
+                values[k] = 1;
+                k++;
+            }
+        }
+        return new SparseVector(width, indexes, values);
+    }
+
+    @Override
+    public boolean sameValues(Vectors that)
+    {
+        if(getClass() != that.getClass()) return Vectors.super.sameValues(that);
+        BitVectors other = (BitVectors) that;
+        return
+            this.size == other.size &&
+            this.width == other.width &&
+            Arrays.equals(this.bits, other.bits);
+    }
+}
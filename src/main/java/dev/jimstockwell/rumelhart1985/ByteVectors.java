@@ -0,0 +1,87 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Vectors of small integers, stored one byte per element.
+ */
+final class ByteVectors implements Vectors
+{
+    private final int size;
+    private final int width;
+    private final byte[] values; // row major
+
+    /**
+     * Constructs byte Vectors from an array.
+     *
+     * @param rows  the vectors, all of the same length
+     * @throws      IllegalArgumentException if any value is not an integer
+     *              from -128 to 127 inclusive
+     */
+    ByteVectors(double[][] rows)
+    {
+        Objects.requireNonNull(rows);
+
+        size = rows.length;
+        width = Vectors.uniformWidth(rows);
+        values = new byte[Vectors.elementCount(size, width)];
+        for(int row=0; row<size; row++)
+        {
+            for(int column=0; column<width; column++)
+            {
+                values[row*width+column] = toByte(rows[row][column]);
+            }
+        }
+    }
+
+    private static byte toByte(double value)
+    {
+        if(value != Math.rint(value) ||
+           value < Byte.MIN_VALUE ||
+           value > Byte.MAX_VALUE)
+            throw new IllegalArgumentException(
+                "value is not a byte sized integer: "+value);
+
+        return (byte) value;
+    }
+
+    @Override public int size()  { return size; }
+    @Override public int width() { return width; }
+
+    @Override
+    public Patterns.Encoding encoding()
+    {
+        return Patterns.Encoding.BYTE;
+    }
+
+    @Override
+    public double get(int row, int column)
+    {
+        Objects.checkIndex(row, size);
+        Objects.checkIndex(column, width);
+        return values[row*width+column];
+    }
+
+    @Override
+    public void copyRow(int row, double[] destination)
+    {
+        Objects.checkIndex(row, size);
+        final int start = row*width;
+        for(int column=0; column<width; column++)
+        {
+            destination[column] = values[start+column];
+        }
+    }
+
+    @Override
+    public boolean sameValues(Vectors that)
+    {
+        if(getClass() != that.getClass()) return Vectors.super.sameValues(that);
+        ByteVectors other = (ByteVectors) that;
+        return
+            this.size == other.size &&
+            this.width == other.width &&
+            Arrays.equals(this.values, other.values);
+    }
+}
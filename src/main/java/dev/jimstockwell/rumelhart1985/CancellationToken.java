@@ -0,0 +1,34 @@
+package dev.jimstockwell.rumelhart1985;
+
+/**
+ * Asks a running job to stop.
+ * <p>
+ * Cancellation is cooperative:
+ * the job checks the token between units of work,
+ * such as training epochs, and stops at the next one.
+ * Once cancelled, a token stays cancelled.
+ * <p>
+ * Thread safe.
+ */
+public final class CancellationToken
+{
+    private volatile boolean cancelled;
+
+    /**
+     * Asks the jobs watching this token to stop.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Reports whether this token has been cancelled.
+     *
+     * @return  true if cancelled
+     */
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+}
@@ -0,0 +1,743 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Writes and reads Networks in a versioned binary format.
+ * <p>
+ * The format is little endian,
+ * and every section starts on an 8 byte boundary:
+ * <pre>
+ *   8 bytes    magic, "R1985NET"
+ *   int        format version
+ *   int        activation function id (0 = logistic)
+ *   int        number of layers in the structure
+ *   int        flags (bit 0: a normalization follows eta,
+ *                     bit 1: a training epoch count follows the structure)
+ *   int[]      structure, padded with a zero int to a multiple of 8 bytes
+ *   long       if flagged, the number of epochs trained so far
+ *   double     eta
+ *   double[]   if flagged, normalization offsets, then scales
+ *   double[]   weights, by layer, then out node, then in node
+ *   double[]   thetas, by layer, then node
+ *   long       CRC32 of everything before it
+ * </pre>
+ * The primitive arrays are streamed through a buffer in bulk,
+ * and are read straight into the arrays backing the new Network's weights.
+ */
+public final class Checkpoint
+{
+    static final byte[] MAGIC = "R1985NET".getBytes(US_ASCII);
+    static final int VERSION = 1;
+    static final int LOGISTIC = 0;
+    static final int HAS_NORMALIZATION = 1;
+    static final int HAS_EPOCHS = 2;
+    static final int MAX_LAYERS = 1 << 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Checkpoint() {}
+
+    /**
+     * An exception thrown when a checkpoint is not in a readable format,
+     * or fails its checksum.
+     */
+    @SuppressWarnings("serial")
+    public static class FormatException extends IOException
+    {
+        /**
+         * Constructs a format exception.
+         *
+         * @param message   a description of what is wrong with the format
+         */
+        public FormatException(String message)
+        {
+            super(message);
+        }
+    }
+
+    /**
+     * Writes a Network to a file.
+     * The file is written beside its final name and then moved into place,
+     * so readers never see a partial checkpoint.
+     *
+     * @param net   the Network to write
+     * @param path  the file to write
+     * @throws      IOException if the file can not be written
+     * @throws      IllegalArgumentException
+     *              if the Network's activation function has no id
+     */
+    public static void write(Network net, Path path) throws IOException
+    {
+        write(net, -1, path);
+    }
+
+    /**
+     * Writes a Network to a file, along with how many epochs it has trained.
+     * This is the state needed to resume training it.
+     *
+     * @param net       the Network to write
+     * @param epochs    the number of epochs trained, or -1 to not record it
+     * @param path      the file to write
+     * @throws          IOException if the file can not be written
+     * @throws          IllegalArgumentException
+     *                  if the Network's activation function has no id
+     */
+    public static void write(Network net, long epochs, Path path)
+    throws IOException
+    {
+        Objects.requireNonNull(net);
+        if(epochs < -1)
+            throw new IllegalArgumentException("epochs must be >= -1");
+        Path absolute = path.toAbsolutePath();
+        Path temporary = createTemporary(absolute);
+        try
+        {
+            try(FileChannel channel = FileChannel.open(
+                    temporary,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                write(net, epochs, channel);
+                channel.force(false);
+            }
+            try
+            {
+                Files.move(temporary, absolute,
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch(AtomicMoveNotSupportedException e)
+            {
+                Files.move(temporary, absolute,
+                    StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Creates an empty file beside a path to write it under.
+     * Unlike Files.createTempFile,
+     * the file gets the same default permissions as any other new file.
+     */
+    private static Path createTemporary(Path absolute) throws IOException
+    {
+        while(true)
+        {
+            Path temporary = absolute.resolveSibling(
+                absolute.getFileName() + "." +
+                Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) +
+                ".part");
+            try
+            {
+                return Files.createFile(temporary);
+            }
+            catch(FileAlreadyExistsException e)
+            {
+                // try another name
+            }
+        }
+    }
+
+    /**
+     * Writes a Network to a channel.
+     * The channel is not closed.
+     *
+     * @param net       the Network to write
+     * @param channel   the channel to write to
+     * @throws          IOException if the channel can not be written
+     * @throws          IllegalArgumentException
+     *                  if the Network's activation function has no id
+     */
+    public static void write(Network net, WritableByteChannel channel)
+    throws IOException
+    {
+        write(net, -1, channel);
+    }
+
+    private static void write(
+        Network net,
+        long epochs,
+        WritableByteChannel channel)
+    throws IOException
+    {
+        final int[] structure = net.structure();
+        final Normalization normalization =
+            net.getNormalization().orElse(null);
+
+        Out out = new Out(channel);
+        out.putBytes(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(activationId(net.activationFunction()));
+        out.putInt(structure.length);
+        out.putInt((normalization == null ? 0 : HAS_NORMALIZATION) |
+                   (epochs < 0 ? 0 : HAS_EPOCHS));
+        for(int count : structure) out.putInt(count);
+        if(structure.length % 2 != 0) out.putInt(0);
+        if(epochs >= 0) out.putLong(epochs);
+
+        out.putDouble(net.eta());
+        if(normalization != null)
+        {
+            out.putDoubles(normalization.offsets());
+            out.putDoubles(normalization.scales());
+        }
+
+        Weights w = net.getW();
+        for(int layer=0; layer<structure.length-1; layer++)
+        {
+            double[] inbound = new double[structure[layer]];
+            for(int outNode=0; outNode<structure[layer+1]; outNode++)
+            {
+                w.copyInboundWeights(layer, outNode, inbound);
+                out.putDoubles(inbound);
+            }
+        }
+
+        Thetas thetas = net.thetas();
+        for(int layer=0; layer<structure.length-1; layer++)
+        {
+            double[] nodes = new double[structure[layer+1]];
+            for(int node=0; node<nodes.length; node++)
+            {
+                nodes[node] = thetas.getTheta(layer, node);
+            }
+            out.putDoubles(nodes);
+        }
+
+        out.finish();
+    }
+
+    private static int activationId(ActivationFunction af)
+    {
+        if(af instanceof LogisticActivationFunction) return LOGISTIC;
+        throw new IllegalArgumentException(
+            "no checkpoint id for activation function "+af.getClass());
+    }
+
+    /**
+     * Reads a Network from a file.
+     *
+     * @param path  the file to read
+     * @return      the Network the file holds
+     * @throws      IOException if the file can not be read
+     * @throws      Checkpoint.FormatException
+     *              if the file is not a readable checkpoint
+     */
+    public static Network read(Path path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Reads how many epochs the Network in a file has trained.
+     * Only the start of the file is read.
+     *
+     * @param path  the file to read
+     * @return      the epochs trained, or -1 if the file does not record it
+     * @throws      IOException if the file can not be read
+     * @throws      Checkpoint.FormatException
+     *              if the file is not a readable checkpoint
+     */
+    public static long epochs(Path path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            return Header.read(new In(channel)).epochs;
+        }
+    }
+
+    /**
+     * Reads a Network from a channel.
+     * The channel is not closed.
+     * <p>
+     * When the channel is seekable, as a file's is,
+     * its size is checked against the size the header implies
+     * before anything is allocated for the weights.
+     * Otherwise, as for a socket or pipe,
+     * each array grows only as its values arrive,
+     * so a corrupt or hostile header can't make the read allocate
+     * much more than the channel actually supplies.
+     *
+     * @param channel   the channel to read from
+     * @return          the Network the channel holds
+     * @throws          IOException if the channel can not be read
+     * @throws          Checkpoint.FormatException
+     *                  if the channel does not hold a readable checkpoint
+     */
+    public static Network read(ReadableByteChannel channel) throws IOException
+    {
+        final long start = channel instanceof SeekableByteChannel
+            ? ((SeekableByteChannel) channel).position()
+            : -1;
+        In in = new In(channel);
+        Header header = Header.read(in);
+        final int[] structure = header.structure;
+        final boolean sized = start >= 0;
+        if(sized)
+        {
+            final long available = ((SeekableByteChannel) channel).size() - start;
+            if(available < header.checkpointSize())
+                throw new FormatException(
+                    "checkpoint is "+available+" bytes "+
+                    "but its structure requires "+header.checkpointSize());
+        }
+
+        final double eta = in.getDouble();
+        Normalization normalization = null;
+        if(header.hasNormalization)
+        {
+            double[] offsets = in.getDoubles(structure[0], sized);
+            double[] scales = in.getDoubles(structure[0], sized);
+            normalization = normalization(offsets, scales);
+        }
+
+        double[][][] weights = new double[structure.length-1][][];
+        for(int layer=0; layer<weights.length; layer++)
+        {
+            // Rows with no weights are made once their thetas have arrived.
+            if(structure[layer] == 0) continue;
+            List<double[]> rows = new ArrayList<>(
+                sized ? structure[layer+1] : 16);
+            for(int outNode=0; outNode<structure[layer+1]; outNode++)
+            {
+                rows.add(in.getDoubles(structure[layer], sized));
+            }
+            weights[layer] = rows.toArray(new double[0][]);
+        }
+
+        double[][] thetas = new double[structure.length-1][];
+        for(int layer=0; layer<thetas.length; layer++)
+        {
+            thetas[layer] = in.getDoubles(structure[layer+1], sized);
+            if(weights[layer] == null)
+                weights[layer] = new double[structure[layer+1]][0];
+        }
+
+        in.verifyChecksum();
+
+        return new Network.Builder()
+                          .withStructure(structure)
+                          .withEta(eta)
+                          .withW(EdgeWeights.adopting(structure, weights))
+                          .withTheta(thetas)
+                          .withNormalization(normalization)
+                          .build();
+    }
+
+    /**
+     * Returns the stored normalization,
+     * reporting values Normalization rejects as a format problem.
+     */
+    private static Normalization normalization(double[] offsets, double[] scales)
+    throws FormatException
+    {
+        try
+        {
+            return Normalization.of(offsets, scales);
+        }
+        catch(IllegalArgumentException e)
+        {
+            throw new FormatException("bad normalization: "+e.getMessage());
+        }
+    }
+
+    /**
+     * Maps a checkpoint file into memory as a read-only Network.
+     * <p>
+     * Only the header, eta and any normalization are read.
+     * The weights and thetas are used in place,
+     * so this takes milliseconds whatever the size of the Network,
+     * and all processes mapping the same file share one copy in memory.
+     * The checksum is not verified, as that would read every page;
+     * use <code>read</code> when the file may be corrupt.
+     * <p>
+     * The file must not be modified while mapped.
+     * (Checkpoint.write replaces files rather than modifying them.)
+     *
+     * @param path  the file to map
+     * @return      a Network backed by the mapped file
+     * @throws      IOException if the file can not be mapped
+     * @throws      Checkpoint.FormatException
+     *              if the file is not a checkpoint of the expected size
+     */
+    public static Network map(Path path) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            In in = new In(channel);
+            Header header = Header.read(in);
+            final int[] structure = header.structure;
+            final int[] structureLessInputLayer =
+                Arrays.copyOfRange(structure, 1, structure.length);
+
+            final double eta = in.getDouble();
+            Normalization normalization = null;
+            long weightsStart = header.length() + Double.BYTES;
+            if(header.hasNormalization)
+            {
+                double[] offsets = new double[structure[0]];
+                double[] scales = new double[structure[0]];
+                in.getDoubles(offsets);
+                in.getDoubles(scales);
+                normalization = normalization(offsets, scales);
+                weightsStart += 2L * structure[0] * Double.BYTES;
+            }
+
+            final long thetasStart =
+                weightsStart + MappedWeights.bytesFor(structure);
+            final long expectedSize = header.checkpointSize();
+            if(channel.size() != expectedSize)
+                throw new FormatException(
+                    "checkpoint is "+channel.size()+" bytes "+
+                    "but its structure requires "+expectedSize);
+
+            return new Network.Builder()
+                .withStructure(structure)
+                .withEta(eta)
+                .withW(new MappedWeights(channel, weightsStart, structure))
+                .withThetas(new MappedThetas(
+                    channel, thetasStart, structureLessInputLayer))
+                .withNormalization(normalization)
+                .build();
+        }
+    }
+
+    /**
+     * The fixed part of a checkpoint, before eta.
+     */
+    static final class Header
+    {
+        final int[] structure;
+        final boolean hasNormalization;
+        final long epochs; // -1 when not recorded
+
+        private Header(int[] structure, boolean hasNormalization, long epochs)
+        {
+            this.structure = structure;
+            this.hasNormalization = hasNormalization;
+            this.epochs = epochs;
+        }
+
+        static Header read(In in) throws IOException
+        {
+            byte[] magic = new byte[MAGIC.length];
+            in.getBytes(magic);
+            if(!Arrays.equals(magic, MAGIC))
+                throw new FormatException("not a network checkpoint");
+
+            final int version = in.getInt();
+            if(version != VERSION)
+                throw new FormatException(
+                    "unsupported checkpoint version "+version);
+
+            final int activation = in.getInt();
+            if(activation != LOGISTIC)
+                throw new FormatException(
+                    "unknown activation function id "+activation);
+
+            final int layers = in.getInt();
+            if(layers < 2 || layers > MAX_LAYERS)
+                throw new FormatException("bad layer count "+layers);
+
+            final int flags = in.getInt();
+            if((flags & ~(HAS_NORMALIZATION | HAS_EPOCHS)) != 0)
+                throw new FormatException("unknown flags "+flags);
+
+            int[] structure = new int[layers];
+            for(int i=0; i<layers; i++) structure[i] = in.getInt();
+            if(layers % 2 != 0) in.getInt();
+
+            var invalidity = Network.structureInvalidity(structure);
+            if(invalidity.isPresent())
+                throw new FormatException(invalidity.get());
+
+            long epochs = -1;
+            if((flags & HAS_EPOCHS) != 0)
+            {
+                epochs = in.getLong();
+                if(epochs < 0)
+                    throw new FormatException("bad epoch count "+epochs);
+            }
+
+            return new Header(
+                structure,
+                (flags & HAS_NORMALIZATION) != 0,
+                epochs);
+        }
+
+        /**
+         * Returns the length in bytes of the header.
+         */
+        int length()
+        {
+            return MAGIC.length + 4*Integer.BYTES +
+                   Integer.BYTES * (structure.length + structure.length%2) +
+                   (epochs < 0 ? 0 : Long.BYTES);
+        }
+
+        /**
+         * Returns the length in bytes of the whole checkpoint
+         * this header begins.
+         */
+        long checkpointSize() throws FormatException
+        {
+            try
+            {
+                long doubles = 1;                               // eta
+                if(hasNormalization)
+                    doubles = Math.addExact(doubles, 2L * structure[0]);
+                for(int layer=0; layer<structure.length-1; layer++)
+                {
+                    doubles = Math.addExact(doubles, Math.multiplyExact(
+                        (long) structure[layer], structure[layer+1]));
+                    doubles = Math.addExact(doubles, structure[layer+1]);
+                }
+                return Math.addExact(
+                    length() + Long.BYTES,
+                    Math.multiplyExact(doubles, Double.BYTES));
+            }
+            catch(ArithmeticException e)
+            {
+                throw new FormatException("structure is too large");
+            }
+        }
+    }
+
+    /**
+     * Buffers primitives out to a channel, checksumming as it goes.
+     */
+    private static final class Out
+    {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer =
+            ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+
+        Out(WritableByteChannel channel)
+        {
+            this.channel = Objects.requireNonNull(channel);
+        }
+
+        void putBytes(byte[] bytes) throws IOException
+        {
+            room(bytes.length);
+            buffer.put(bytes);
+        }
+
+        void putInt(int value) throws IOException
+        {
+            room(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException
+        {
+            room(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException
+        {
+            room(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        void putDoubles(double[] values) throws IOException
+        {
+            int offset = 0;
+            while(offset < values.length)
+            {
+                room(Double.BYTES);
+                final int count = Math.min(
+                    buffer.remaining() / Double.BYTES,
+                    values.length - offset);
+                buffer.asDoubleBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + count*Double.BYTES);
+                offset += count;
+            }
+        }
+
+        /**
+         * Writes out the buffer, then the checksum of everything written.
+         */
+        void finish() throws IOException
+        {
+            drain();
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            while(buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        private void room(int bytes) throws IOException
+        {
+            if(buffer.remaining() < bytes) drain();
+        }
+
+        private void drain() throws IOException
+        {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while(buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Buffers primitives in from a channel, checksumming as it goes.
+     */
+    static final class In
+    {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer =
+            ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+
+        In(ReadableByteChannel channel)
+        {
+            this.channel = Objects.requireNonNull(channel);
+            buffer.limit(0);
+        }
+
+        void getBytes(byte[] bytes) throws IOException
+        {
+            available(bytes.length);
+            checksum(bytes.length);
+            buffer.get(bytes);
+        }
+
+        int getInt() throws IOException
+        {
+            available(Integer.BYTES);
+            checksum(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException
+        {
+            available(Long.BYTES);
+            checksum(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        double getDouble() throws IOException
+        {
+            available(Double.BYTES);
+            checksum(Double.BYTES);
+            return buffer.getDouble();
+        }
+
+        void getDoubles(double[] values) throws IOException
+        {
+            int offset = 0;
+            while(offset < values.length)
+            {
+                available(Double.BYTES);
+                final int count = Math.min(
+                    buffer.remaining() / Double.BYTES,
+                    values.length - offset);
+                checksum(count*Double.BYTES);
+                buffer.asDoubleBuffer().get(values, offset, count);
+                buffer.position(buffer.position() + count*Double.BYTES);
+                offset += count;
+            }
+        }
+
+        /**
+         * Reads a number of doubles into a new array.
+         * Unless the number is known to be there,
+         * the array starts small and grows as the values arrive,
+         * so a bad count costs no more than the values actually read.
+         *
+         * @param count     the number of doubles
+         * @param trusted   whether the channel is known to hold them
+         */
+        double[] getDoubles(int count, boolean trusted) throws IOException
+        {
+            if(trusted)
+            {
+                double[] values = new double[count];
+                getDoubles(values);
+                return values;
+            }
+
+            double[] values = new double[Math.min(count, BUFFER_SIZE/Double.BYTES)];
+            int offset = 0;
+            while(offset < count)
+            {
+                if(offset == values.length)
+                    values = Arrays.copyOf(
+                        values, (int) Math.min(count, 2L*values.length));
+                available(Double.BYTES);
+                final int n = Math.min(
+                    buffer.remaining() / Double.BYTES,
+                    values.length - offset);
+                checksum(n*Double.BYTES);
+                buffer.asDoubleBuffer().get(values, offset, n);
+                buffer.position(buffer.position() + n*Double.BYTES);
+                offset += n;
+            }
+            return values;
+        }
+
+        /**
+         * Reads the stored checksum and compares it with the one computed.
+         */
+        void verifyChecksum() throws IOException
+        {
+            final long computed = crc.getValue();
+            available(Long.BYTES);
+            if(buffer.getLong() != computed)
+                throw new FormatException("checksum mismatch");
+        }
+
+        private void checksum(int bytes)
+        {
+            ByteBuffer consumed = buffer.duplicate();
+            consumed.limit(buffer.position() + bytes);
+            crc.update(consumed);
+        }
+
+        private void available(int bytes) throws IOException
+        {
+            if(buffer.remaining() >= bytes) return;
+
+            buffer.compact();
+            while(buffer.position() < bytes)
+            {
+                if(channel.read(buffer) < 0)
+                {
+                    throw new FormatException("checkpoint is truncated");
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Objects;
+
+/**
+ * Vectors stored as doubles in fixed size chunks of rows.
+ * <p>
+ * This is a read-only view of the first <code>size</code> rows.
+ * The chunks may be shared with a GrowablePatterns that keeps appending
+ * past those rows, but the rows within this view never change.
+ */
+final class ChunkedVectors implements Vectors
+{
+    private final int size;
+    private final int width;
+    private final int rowsPerChunk;
+    private final double[][] chunks; // each rowsPerChunk*width long, except
+                                     // that a lone chunk may be shorter
+
+    ChunkedVectors(int size, int width, int rowsPerChunk, double[][] chunks)
+    {
+        if(size < 0 || width < 0 || rowsPerChunk < 1)
+            throw new IllegalArgumentException(
+                "size, width and rowsPerChunk must be non negative, "+
+                "and rowsPerChunk positive");
+        if((long)chunks.length * rowsPerChunk < size)
+            throw new IllegalArgumentException(
+                "chunks can not hold "+size+" rows");
+
+        this.size = size;
+        this.width = width;
+        this.rowsPerChunk = rowsPerChunk;
+        this.chunks = Objects.requireNonNull(chunks);
+    }
+
+    @Override public int size()  { return size; }
+    @Override public int width() { return width; }
+
+    @Override
+    public Patterns.Encoding encoding()
+    {
+        return Patterns.Encoding.DOUBLE;
+    }
+
+    @Override
+    public double get(int row, int column)
+    {
+        Objects.checkIndex(row, size);
+        Objects.checkIndex(column, width);
+        return chunks[row/rowsPerChunk][(row%rowsPerChunk)*width+column];
+    }
+
+    @Override
+    public void copyRow(int row, double[] destination)
+    {
+        Objects.checkIndex(row, size);
+        System.arraycopy(
+            chunks[row/rowsPerChunk], (row%rowsPerChunk)*width,
+            destination, 0,
+            width);
+    }
+}
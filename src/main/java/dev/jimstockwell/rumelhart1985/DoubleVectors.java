@@ -0,0 +1,62 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Vectors stored as 8 byte doubles, one contiguous array for the whole table.
+ */
+final class DoubleVectors implements Vectors
+{
+    private final int size;
+    private final int width;
+    private final double[] values; // row major
+
+    DoubleVectors(double[][] rows)
+    {
+        Objects.requireNonNull(rows);
+
+        size = rows.length;
+        width = Vectors.uniformWidth(rows);
+        values = new double[Vectors.elementCount(size, width)];
+        for(int row=0; row<size; row++)
+        {
+            System.arraycopy(rows[row], 0, values, row*width, width);
+        }
+    }
+
+    @Override public int size()  { return size; }
+    @Override public int width() { return width; }
+
+    @Override
+    public Patterns.Encoding encoding()
+    {
+        return Patterns.Encoding.DOUBLE;
+    }
+
+    @Override
+    public double get(int row, int column)
+    {
+        Objects.checkIndex(row, size);
+        Objects.checkIndex(column, width);
+        return values[row*width+column];
+    }
+
+    @Override
+    public void copyRow(int row, double[] destination)
+    {
+        Objects.checkIndex(row, size);
+        System.arraycopy(values, row*width, destination, 0, width);
+    }
+
+    @Override
+    public boolean sameValues(Vectors that)
+    {
+        if(getClass() != that.getClass()) return Vectors.super.sameValues(that);
+        DoubleVectors other = (DoubleVectors) that;
+        return
+            this.size == other.size &&
+            this.width == other.width &&
+            Arrays.equals(this.values, other.values);
+    }
+}
@@ -75,12 +75,40 @@ class EdgeWeights implements Weights
         this.edges = new Edges(structure,populator);
     }
 
+    private EdgeWeights(Edges edges)
+    {
+        this.edges = edges;
+    }
+
+    /**
+     * Returns EdgeWeights that take ownership of the specified array
+     * rather than copying it element by element.
+     * The caller must not modify the array afterwards.
+     *
+     * @param structure the number of nodes in each layer
+     * @param weights   the weights, indexed by layer, out node, in node
+     * @return          EdgeWeights backed by the array
+     */
+    static EdgeWeights adopting(int[] structure, double[][][] weights)
+    {
+        return new EdgeWeights(Edges.adopting(structure, weights));
+    }
+
     @Override
     public Weights populate( Weights.ThreeIntFunction<Double> f)
     {
         return new EdgeWeights(edges.getStructure(), f);
     }
 
+    @Override
+    public void copyInboundWeights(
+        int layer,
+        int outputNode,
+        double[] destination)
+    {
+        edges.copyInboundEdges(layer, outputNode, destination);
+    }
+
     @Override
     public boolean consistentWith(int[] structure)
     {
@@ -108,17 +136,22 @@ class EdgeWeights implements Weights
 
     @Override public int hashCode()
     {
-        return edges.hashCode();
+        return ParameterValues.hash(edges.getStructure(), this);
     }
 
+    /**
+     * EdgeWeights equal MappedWeights and SlicedWeights
+     * holding the same values.
+     */
     @Override
     public boolean equals(Object o)
     {
         if(this == o) return true;
         if(o == null) return false;
-        if(getClass() != o.getClass()) return false;
-        EdgeWeights that = (EdgeWeights) o;
-        return this.edges.equals(that.edges);
+        if(getClass() == o.getClass())
+            return this.edges.equals(((EdgeWeights) o).edges);
+        if(!ParameterValues.isValueWeights(o)) return false;
+        return ParameterValues.equal(edges.getStructure(), this, (Weights) o);
     }
 
     @Override
@@ -90,6 +90,63 @@ public final class Edges
         edges = makeAllEdges(f);
     }
 
+    /**
+     * Adopts already built edges, without copying them.
+     */
+    private Edges(int[] structure, double[][][] edges)
+    {
+        this.structure = structure;
+        this.edges = edges;
+    }
+
+    /**
+     * Returns Edges that take ownership of an already built array,
+     * rather than populating a new one edge by edge.
+     *
+     * @param structure an array representing the number of nodes in each layer
+     * @param edges     the edges, indexed by layer, out node, in node
+     * @return          Edges backed by the array
+     * @throws          IllegalArgumentException
+     *                  if the array does not match the structure
+     */
+    static Edges adopting(int[] structure, double[][][] edges)
+    {
+        if(edges.length != structure.length-1)
+            throw new IllegalArgumentException(
+                "edge layers ["+edges.length+"] != "+
+                "structure length - 1 ["+(structure.length-1)+"]");
+        for(int layer=0; layer<edges.length; layer++)
+        {
+            if(edges[layer].length != structure[layer+1])
+                throw new IllegalArgumentException(
+                    "layer "+layer+" has the wrong number of out nodes");
+            for(double[] inbound : edges[layer])
+            {
+                if(inbound.length != structure[layer])
+                    throw new IllegalArgumentException(
+                        "layer "+layer+" has the wrong number of in nodes");
+            }
+        }
+        return new Edges(Arrays.copyOf(structure,structure.length), edges);
+    }
+
+    /**
+     * Copies the edges into one node into an array.
+     *
+     * @param layer         the layer of edges, 0 is from inputs
+     * @param outNode       the node in the output-ward layer
+     * @param destination   an array at least as long as the input-ward layer
+     */
+    void copyInboundEdges(int layer, int outNode, double[] destination)
+    {
+        Objects.checkIndex(layer,edges.length);
+        Objects.checkIndex(outNode,edges[layer].length);
+        System.arraycopy(
+            edges[layer][outNode], 0,
+            destination, 0,
+            edges[layer][outNode].length);
+    }
+
     private double[][][] makeAllEdges(Populator f)
     {
         //
@@ -0,0 +1,216 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answers with many Networks of one structure at once.
+ * <p>
+ * Every member sees the same input,
+ * so the members' first layer weights are stacked
+ * into one matrix with a row per first layer unit of every member,
+ * and the input is read once for all of them.
+ * Later layers are each member's own,
+ * kept side by side in flat arrays.
+ * <p>
+ * Members must share structure, normalization and activation function.
+ * <p>
+ * Immutable and thread safe.
+ */
+public final class Ensemble
+{
+    private final int members;
+    private final int[] structure;
+    private final double[][] weights;   // [layer][(member*outCount + out)*inCount + in]
+    private final double[][] thetas;    // [layer][member*outCount + out]
+    private final Normalization normalization;  // null for none
+    private final ActivationFunction activationFunction;
+
+    /**
+     * The answers of an Ensemble's members to one input.
+     */
+    public static final class Answer
+    {
+        private final double[][] members;
+
+        private Answer(double[][] members)
+        {
+            this.members = members;
+        }
+
+        /**
+         * Returns each member's outputs.
+         *
+         * @return  the outputs, one row per member, in member order
+         */
+        public double[][] members()
+        {
+            double[][] copy = new double[members.length][];
+            Arrays.setAll(copy, m->members[m].clone());
+            return copy;
+        }
+
+        /**
+         * Returns one member's outputs.
+         *
+         * @param member    the member's index
+         * @return          the member's outputs
+         */
+        public double[] member(int member)
+        {
+            return members[member].clone();
+        }
+
+        /**
+         * Returns the members' outputs averaged unit by unit.
+         *
+         * @return  the mean outputs
+         */
+        public double[] mean()
+        {
+            double[] mean = new double[members[0].length];
+            for(double[] outputs : members)
+            {
+                for(int j=0; j<mean.length; j++) mean[j] += outputs[j];
+            }
+            for(int j=0; j<mean.length; j++) mean[j] /= members.length;
+            return mean;
+        }
+    }
+
+    private Ensemble(List<Network> nets)
+    {
+        members = nets.size();
+        Network first = nets.get(0);
+        structure = first.structure();
+        normalization = first.getNormalization().orElse(null);
+        activationFunction = first.activationFunction();
+        for(Network net : nets)
+        {
+            if(!Arrays.equals(net.structure(), structure))
+                throw new IllegalArgumentException(
+                    "structures differ: "+Arrays.toString(structure)+
+                    " and "+Arrays.toString(net.structure()));
+            if(!net.getNormalization().equals(first.getNormalization()))
+                throw new IllegalArgumentException("normalizations differ");
+            if(net.activationFunction().getClass() !=
+               activationFunction.getClass())
+                throw new IllegalArgumentException(
+                    "activation functions differ");
+        }
+
+        weights = new double[structure.length-1][];
+        thetas = new double[structure.length-1][];
+        for(int layer=0; layer<structure.length-1; layer++)
+        {
+            final int inCount = structure[layer];
+            final int outCount = structure[layer+1];
+            weights[layer] = new double[
+                Math.multiplyExact(Math.multiplyExact(members, outCount), inCount)];
+            thetas[layer] = new double[members*outCount];
+            double[] inbound = new double[inCount];
+            for(int m=0; m<members; m++)
+            {
+                Weights w = nets.get(m).getW();
+                Thetas th = nets.get(m).thetas();
+                for(int out=0; out<outCount; out++)
+                {
+                    final int row = m*outCount + out;
+                    w.copyInboundWeights(layer, out, inbound);
+                    System.arraycopy(inbound, 0, weights[layer], row*inCount, inCount);
+                    thetas[layer][row] = th.getTheta(layer, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the Ensemble of the specified Networks.
+     *
+     * @param nets  the members, at least one
+     * @return      the Ensemble
+     * @throws      IllegalArgumentException if the members differ in
+     *              structure, normalization or activation function
+     */
+    public static Ensemble of(List<Network> nets)
+    {
+        if(nets.isEmpty())
+            throw new IllegalArgumentException("an ensemble needs a member");
+        return new Ensemble(nets);
+    }
+
+    /**
+     * Returns the number of members.
+     *
+     * @return  the number of members
+     */
+    public int size()
+    {
+        return members;
+    }
+
+    /**
+     * Returns every member's answer to an input.
+     *
+     * @param input the inputs, the size of the input layer
+     * @return      the members' answers
+     */
+    public Answer answer(double[] input)
+    {
+        if(input.length != structure[0])
+            throw new IllegalArgumentException(
+                "input length ["+input.length+"] != "+
+                "input layer size ["+structure[0]+"]");
+        final double[] in = normalization == null
+            ? input
+            : normalization.apply(input);
+
+        // First layer: one stacked matrix against the shared input.
+        double[] activations = new double[members*structure[1]];
+        final double[] w0 = weights[0];
+        for(int row=0; row<activations.length; row++)
+        {
+            final int offset = row*in.length;
+            double netpj = 0;
+            for(int i=0; i<in.length; i++)
+            {
+                netpj += w0[offset+i] * in[i];
+            }
+            activations[row] = activationFunction.f(netpj, thetas[0][row]);
+        }
+
+        // Later layers: each member's block against its own activations.
+        for(int layer=1; layer<weights.length; layer++)
+        {
+            final int inCount = structure[layer];
+            final int outCount = structure[layer+1];
+            final double[] w = weights[layer];
+            double[] next = new double[members*outCount];
+            for(int m=0; m<members; m++)
+            {
+                final int inOffset = m*inCount;
+                for(int out=0; out<outCount; out++)
+                {
+                    final int row = m*outCount + out;
+                    final int offset = row*inCount;
+                    double netpj = 0;
+                    for(int i=0; i<inCount; i++)
+                    {
+                        netpj += w[offset+i] * activations[inOffset+i];
+                    }
+                    next[row] = activationFunction.f(netpj, thetas[layer][row]);
+                }
+            }
+            activations = next;
+        }
+
+        final int outCount = structure[structure.length-1];
+        double[][] outputs = new double[members][];
+        for(int m=0; m<members; m++)
+        {
+            outputs[m] = Arrays.copyOfRange(
+                activations, m*outCount, (m+1)*outCount);
+        }
+        return new Answer(outputs);
+    }
+}
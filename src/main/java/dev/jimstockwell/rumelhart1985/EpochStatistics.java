@@ -0,0 +1,66 @@
+package dev.jimstockwell.rumelhart1985;
+
+/**
+ * Accumulates, over one learning pass,
+ * the loss and tolerance test of the outputs the pass computed anyway.
+ * <p>
+ * Each pattern's outputs are those of the network as it stood
+ * just before learning that pattern,
+ * so the totals are a running estimate
+ * of what a separate pass after the epoch would find.
+ */
+final class EpochStatistics
+{
+    private final double tolerance;
+    private double loss;
+    private boolean withinTolerance = true;
+
+    /**
+     * Starts with no patterns recorded.
+     *
+     * @param tolerance how close each output must be to its target
+     */
+    EpochStatistics(double tolerance)
+    {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Records one pattern's outputs.
+     *
+     * @param output        the outputs computed for the pattern
+     * @param target        the pattern's targets
+     * @param multiplicity  how many patterns this one stands for
+     */
+    void record(double[] output, double[] target, double multiplicity)
+    {
+        // Patterns with no multiplicity don't count.
+        if(multiplicity == 0) return;
+
+        loss += multiplicity * Network.lossForOnePattern(output, target);
+        for(int i=0; i<output.length && withinTolerance; i++)
+        {
+            withinTolerance = Math.abs(target[i]-output[i]) < tolerance;
+        }
+    }
+
+    /**
+     * Returns the loss over the patterns recorded.
+     *
+     * @return  the total loss, each pattern weighted by its multiplicity
+     */
+    double loss()
+    {
+        return loss;
+    }
+
+    /**
+     * Reports whether every output recorded was within tolerance.
+     *
+     * @return  true if every output was within tolerance of its target
+     */
+    boolean withinTolerance()
+    {
+        return withinTolerance;
+    }
+}
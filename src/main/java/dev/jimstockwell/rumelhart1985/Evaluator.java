@@ -0,0 +1,289 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures how well a Network answers a set of patterns,
+ * in parallel.
+ * <p>
+ * The patterns are split into batches of consecutive patterns,
+ * each answered with the batched forward pass on the executor.
+ * Each batch's totals are kept by batch
+ * and combined in batch order at the end,
+ * so results are the same whatever order the batches finish in.
+ * <p>
+ * Thread safe.
+ */
+public final class Evaluator
+{
+    private final Executor executor;
+    private final int batchSize;
+    private final double tolerance;
+
+    /**
+     * The measures of one evaluation.
+     * Each pattern counts as many times as its multiplicity.
+     */
+    public static final class Evaluation
+    {
+        private final double loss;
+        private final double accuracy;
+        private final double maxError;
+
+        private Evaluation(double loss, double accuracy, double maxError)
+        {
+            this.loss = loss;
+            this.accuracy = accuracy;
+            this.maxError = maxError;
+        }
+
+        /**
+         * Returns the total loss, as Network computes it.
+         *
+         * @return  the loss
+         */
+        public double loss()
+        {
+            return loss;
+        }
+
+        /**
+         * Returns the fraction of patterns
+         * whose every output is within tolerance of its target.
+         *
+         * @return  the accuracy, from 0 to 1
+         */
+        public double accuracy()
+        {
+            return accuracy;
+        }
+
+        /**
+         * Returns the largest difference between any output and its target.
+         *
+         * @return  the maximum error
+         */
+        public double maxError()
+        {
+            return maxError;
+        }
+    }
+
+    /**
+     * Builds an Evaluator.
+     * By default it runs on the common pool,
+     * in batches of 1024 patterns, with a tolerance of .1.
+     */
+    public static final class Builder
+    {
+        private Executor executor = ForkJoinPool.commonPool();
+        private int batchSize = 1024;
+        private double tolerance = .1;
+
+        /**
+         * Specifies the executor batches run on.
+         *
+         * @param executor  the executor
+         * @return          a reference to this builder
+         */
+        public Builder withExecutor(Executor executor)
+        {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * Specifies the number of patterns in a batch.
+         *
+         * @param size  the batch size, at least 1
+         * @return      a reference to this builder
+         */
+        public Builder withBatchSize(int size)
+        {
+            if(size < 1)
+                throw new IllegalArgumentException(
+                    "size must be >= 1, but was "+size);
+            this.batchSize = size;
+            return this;
+        }
+
+        /**
+         * Specifies how close an output must be to its target
+         * to count as right.
+         *
+         * @param tolerance the tolerance, more than 0
+         * @return          a reference to this builder
+         */
+        public Builder withTolerance(double tolerance)
+        {
+            if(!(tolerance > 0))
+                throw new IllegalArgumentException(
+                    "tolerance must be > 0, but was "+tolerance);
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Builds the specified Evaluator.
+         *
+         * @return the built Evaluator
+         */
+        public Evaluator build()
+        {
+            return new Evaluator(this);
+        }
+    }
+
+    private Evaluator(Builder builder)
+    {
+        executor = builder.executor;
+        batchSize = builder.batchSize;
+        tolerance = builder.tolerance;
+    }
+
+    /**
+     * Evaluates a Network against every pattern.
+     *
+     * @param net   the Network
+     * @param pats  the patterns
+     * @return      the loss, accuracy and maximum error
+     */
+    public Evaluation evaluate(Network net, Patterns pats)
+    {
+        final int batches = batchCount(pats);
+        final double[] loss = new double[batches];
+        final double[] right = new double[batches];
+        final double[] weight = new double[batches];
+        final double[] maxError = new double[batches];
+
+        runBatches(batches, batch -> {
+            final int first = batch*batchSize;
+            final double[][] outputs = net.answer(inputs(pats, batch));
+            for(int b=0; b<outputs.length; b++)
+            {
+                final double multiplicity = pats.getMultiplicity(first+b);
+                final double[] target = pats.getOutputPattern(first+b);
+                final double[] output = outputs[b];
+                if(output.length != target.length)
+                    throw new IllegalArgumentException(
+                        "output length ["+output.length+"] != "+
+                        "target length ["+target.length+"]");
+
+                loss[batch] += multiplicity *
+                               Network.lossForOnePattern(output, target);
+                if(multiplicity == 0) continue;
+                weight[batch] += multiplicity;
+                double worst = 0;
+                for(int i=0; i<output.length; i++)
+                {
+                    worst = Math.max(worst, Math.abs(target[i]-output[i]));
+                }
+                maxError[batch] = Math.max(maxError[batch], worst);
+                if(worst < tolerance) right[batch] += multiplicity;
+            }
+            return true;
+        });
+
+        double totalLoss = 0, totalRight = 0, totalWeight = 0, totalMax = 0;
+        for(int batch=0; batch<batches; batch++)
+        {
+            totalLoss += loss[batch];
+            totalRight += right[batch];
+            totalWeight += weight[batch];
+            totalMax = Math.max(totalMax, maxError[batch]);
+        }
+        return new Evaluation(
+            totalLoss,
+            totalWeight == 0 ? 1 : totalRight / totalWeight,
+            totalMax);
+    }
+
+    /**
+     * Reports whether every output is within tolerance of its target.
+     * Batches not yet started are skipped
+     * as soon as any batch finds an output that is not.
+     *
+     * @param net   the Network
+     * @param pats  the patterns
+     * @return      true if every output is within tolerance
+     */
+    public boolean allWithinTolerance(Network net, Patterns pats)
+    {
+        return runBatches(batchCount(pats), batch -> {
+            final int first = batch*batchSize;
+            final double[][] outputs = net.answer(inputs(pats, batch));
+            for(int b=0; b<outputs.length; b++)
+            {
+                // Patterns with no multiplicity don't count.
+                if(pats.getMultiplicity(first+b) == 0) continue;
+                final double[] target = pats.getOutputPattern(first+b);
+                for(int i=0; i<target.length; i++)
+                {
+                    if(!(Math.abs(target[i]-outputs[b][i]) < tolerance))
+                        return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Work on one batch, returning false to stop the remaining batches.
+     */
+    @FunctionalInterface
+    private interface Batch
+    {
+        boolean run(int batch);
+    }
+
+    /**
+     * Runs every batch, in parallel, until one returns false.
+     *
+     * @return  true if no batch returned false
+     */
+    private boolean runBatches(int batches, Batch work)
+    {
+        final AtomicBoolean stopped = new AtomicBoolean();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[batches];
+        for(int batch=0; batch<batches; batch++)
+        {
+            final int b = batch;
+            futures[batch] = CompletableFuture.runAsync(() -> {
+                if(!stopped.get() && !work.run(b)) stopped.set(true);
+            }, executor);
+        }
+        try
+        {
+            CompletableFuture.allOf(futures).join();
+        }
+        catch(CompletionException e)
+        {
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return !stopped.get();
+    }
+
+    private int batchCount(Patterns pats)
+    {
+        return (pats.size() + batchSize - 1) / batchSize;
+    }
+
+    private double[][] inputs(Patterns pats, int batch)
+    {
+        final int first = batch*batchSize;
+        final int count = Math.min(batchSize, pats.size() - first);
+        double[][] inputs = new double[count][];
+        for(int b=0; b<count; b++)
+        {
+            inputs[b] = pats.getInputPattern(first+b);
+        }
+        return inputs;
+    }
+}
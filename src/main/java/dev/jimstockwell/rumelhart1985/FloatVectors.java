@@ -0,0 +1,71 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Vectors stored as 4 byte floats.
+ * Values are rounded to the nearest float on the way in,
+ * so this is only suitable where single precision is good enough.
+ */
+final class FloatVectors implements Vectors
+{
+    private final int size;
+    private final int width;
+    private final float[] values; // row major
+
+    FloatVectors(double[][] rows)
+    {
+        Objects.requireNonNull(rows);
+
+        size = rows.length;
+        width = Vectors.uniformWidth(rows);
+        values = new float[Vectors.elementCount(size, width)];
+        for(int row=0; row<size; row++)
+        {
+            for(int column=0; column<width; column++)
+            {
+                values[row*width+column] = (float) rows[row][column];
+            }
+        }
+    }
+
+    @Override public int size()  { return size; }
+    @Override public int width() { return width; }
+
+    @Override
+    public Patterns.Encoding encoding()
+    {
+        return Patterns.Encoding.FLOAT;
+    }
+
+    @Override
+    public double get(int row, int column)
+    {
+        Objects.checkIndex(row, size);
+        Objects.checkIndex(column, width);
+        return values[row*width+column];
+    }
+
+    @Override
+    public void copyRow(int row, double[] destination)
+    {
+        Objects.checkIndex(row, size);
+        final int start = row*width;
+        for(int column=0; column<width; column++)
+        {
+            destination[column] = values[start+column];
+        }
+    }
+
+    @Override
+    public boolean sameValues(Vectors that)
+    {
+        if(getClass() != that.getClass()) return Vectors.super.sameValues(that);
+        FloatVectors other = (FloatVectors) that;
+        return
+            this.size == other.size &&
+            this.width == other.width &&
+            Arrays.equals(this.values, other.values);
+    }
+}
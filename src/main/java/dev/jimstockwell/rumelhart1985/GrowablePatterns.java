@@ -0,0 +1,195 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+
+/**
+ * A collection of patterns that can be appended to,
+ * for training sets that grow as new examples arrive.
+ * <p>
+ * Patterns are stored in fixed size chunks,
+ * so once past the first chunk an append never copies the patterns
+ * already stored; only the small array of chunk references is regrown.
+ * The first chunk starts small and doubles up to full size,
+ * so a small set of patterns does not hold a whole chunk.
+ * <p>
+ * A snapshot is an ordinary, immutable Patterns
+ * holding the patterns appended so far.
+ * It shares storage with this object rather than copying it,
+ * and may be learned from while appends continue.
+ * <p>
+ * This class is thread safe.
+ */
+public final class GrowablePatterns
+{
+    static final int DEFAULT_ROWS_PER_CHUNK = 1024;
+    private static final int FIRST_CHUNK_ROWS = 16;
+
+    private final Side inputs;
+    private final Side outputs;
+    private int size;
+
+    /**
+     * Constructs an empty GrowablePatterns.
+     *
+     * @param inputWidth    the length of every input pattern
+     * @param outputWidth   the length of every output pattern
+     * @throws  IllegalArgumentException
+     *          if a width is negative,
+     *          or so large that a chunk of patterns can not be one array
+     */
+    public GrowablePatterns(int inputWidth, int outputWidth)
+    {
+        this(inputWidth, outputWidth, DEFAULT_ROWS_PER_CHUNK);
+    }
+
+    GrowablePatterns(int inputWidth, int outputWidth, int rowsPerChunk)
+    {
+        if(inputWidth < 0 || outputWidth < 0)
+            throw new IllegalArgumentException(
+                "widths must not be negative, but were "+
+                inputWidth+" and "+outputWidth);
+        if(rowsPerChunk < 1)
+            throw new IllegalArgumentException(
+                "rowsPerChunk must be positive, but was "+rowsPerChunk);
+
+        inputs = new Side(inputWidth, rowsPerChunk);
+        outputs = new Side(outputWidth, rowsPerChunk);
+    }
+
+    /**
+     * Appends one pattern.
+     * The arrays are copied.
+     *
+     * @param input     the input half of the pattern
+     * @param output    the output half of the pattern
+     * @return          this, for chaining
+     * @throws  IllegalArgumentException
+     *          if either half is not the width given at construction
+     */
+    public synchronized GrowablePatterns append(double[] input, double[] output)
+    {
+        inputs.checkWidth(input);
+        outputs.checkWidth(output);
+
+        inputs.put(size, input);
+        outputs.put(size, output);
+        size++;
+        return this;
+    }
+
+    /**
+     * Appends every pattern of the specified Patterns.
+     *
+     * @param pats  the patterns to append
+     * @return      this, for chaining
+     */
+    public synchronized GrowablePatterns appendAll(Patterns pats)
+    {
+        for(int i=0; i<pats.size(); i++)
+        {
+            append(pats.getInputPattern(i), pats.getOutputPattern(i));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of patterns appended so far.
+     *
+     * @return  the number of patterns appended so far
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the patterns appended so far, without copying them.
+     * Later appends do not change the returned Patterns.
+     *
+     * @return  an immutable view of the patterns appended so far
+     */
+    public synchronized Patterns snapshot()
+    {
+        return new Patterns(inputs.view(size), outputs.view(size));
+    }
+
+    /**
+     * One half (input or output) of the patterns.
+     */
+    private static final class Side
+    {
+        private final int width;
+        private final int rowsPerChunk;
+        private final int chunkLength;  // rowsPerChunk*width
+        private double[][] chunks = new double[0][];
+
+        Side(int width, int rowsPerChunk)
+        {
+            this.width = width;
+            this.rowsPerChunk = rowsPerChunk;
+            this.chunkLength = Vectors.elementCount(rowsPerChunk, width);
+        }
+
+        void checkWidth(double[] row)
+        {
+            if(row.length != width)
+                throw new IllegalArgumentException(
+                    "pattern width ["+row.length+"] != "+
+                    "required width ["+width+"]");
+        }
+
+        void put(int rowIndex, double[] row)
+        {
+            final int chunk = rowIndex / rowsPerChunk;
+            if(chunk == chunks.length)
+            {
+                // Doubling keeps regrowing the chunk table amortized O(1).
+                // The chunks themselves are never copied.
+                chunks = Arrays.copyOf(chunks, Math.max(1, chunks.length*2));
+            }
+            if(chunk == 0)
+            {
+                chunks[0] = firstChunkHolding(rowIndex);
+            }
+            else if(chunks[chunk] == null)
+            {
+                chunks[chunk] = new double[chunkLength];
+            }
+            System.arraycopy(
+                row, 0,
+                chunks[chunk], (rowIndex % rowsPerChunk)*width,
+                width);
+        }
+
+        /**
+         * Returns the first chunk, regrown if need be to hold a row.
+         * A regrown chunk is a copy,
+         * so snapshots sharing the old one are unaffected.
+         */
+        private double[] firstChunkHolding(int rowIndex)
+        {
+            final double[] first = chunks[0];
+            final int rows = first == null ? 0
+                           : width == 0    ? rowsPerChunk
+                           : first.length / width;
+            if(first != null && rowIndex < rows) return first;
+
+            final int newRows = Math.min(
+                rowsPerChunk,
+                Math.max(FIRST_CHUNK_ROWS, rows*2));
+            final double[] grown = new double[newRows*width];
+            if(first != null) System.arraycopy(first, 0, grown, 0, first.length);
+            return grown;
+        }
+
+        Vectors view(int size)
+        {
+            final int usedChunks = (size + rowsPerChunk - 1) / rowsPerChunk;
+            return new ChunkedVectors(
+                size,
+                width,
+                rowsPerChunk,
+                Arrays.copyOf(chunks, usedChunks));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+
+/**
+ * Answers a stream of inputs that each differ from the last in a few places.
+ * <p>
+ * The first layer's net inputs (netpj, before theta) are kept.
+ * When an input changes by delta,
+ * each first layer unit's netpj changes by that input's weight times delta,
+ * so a change costs one pass over the changed inputs' weights
+ * rather than over all of them.
+ * The layers above are then answered as usual.
+ * The first layer's weights are held transposed, input by input,
+ * so that pass reads contiguous memory.
+ * <p>
+ * Rounding accumulates with each update,
+ * so the net inputs are recomputed exactly
+ * after every REFRESH_INTERVAL changed inputs.
+ * <p>
+ * Not thread safe; each caller needs its own evaluator.
+ */
+public final class IncrementalEvaluator
+{
+    static final int REFRESH_INTERVAL = 1 << 12;
+
+    private final Network net;
+    private final int inCount;
+    private final int firstLayerCount;
+    private final double[] columns;     // [in*firstLayerCount + out]
+    private final double[] thetas;      // first layer
+    private final double[] scales;      // null for no normalization
+    private final double[] input;       // as given, before normalization
+    private final double[] netpj;
+    private int changesSinceRefresh;
+
+    private IncrementalEvaluator(Network net, double[] input)
+    {
+        this.net = net;
+        final int[] structure = net.structure();
+        inCount = structure[0];
+        firstLayerCount = structure[1];
+
+        columns = new double[Math.multiplyExact(inCount, firstLayerCount)];
+        thetas = new double[firstLayerCount];
+        double[] inbound = new double[inCount];
+        for(int out=0; out<firstLayerCount; out++)
+        {
+            net.getW().copyInboundWeights(0, out, inbound);
+            for(int in=0; in<inCount; in++)
+            {
+                columns[in*firstLayerCount + out] = inbound[in];
+            }
+            thetas[out] = net.thetas().getTheta(0, out);
+        }
+        scales = net.getNormalization().map(Normalization::scales).orElse(null);
+
+        this.input = new double[inCount];
+        this.netpj = new double[firstLayerCount];
+        reset(input);
+    }
+
+    /**
+     * Returns an evaluator for a Network, starting from an input.
+     *
+     * @param net   the Network
+     * @param input the starting input, the size of the input layer
+     * @return      the evaluator
+     */
+    public static IncrementalEvaluator of(Network net, double[] input)
+    {
+        return new IncrementalEvaluator(net, input);
+    }
+
+    /**
+     * Replaces the whole input, recomputing from scratch.
+     *
+     * @param input the new input, the size of the input layer
+     */
+    public void reset(double[] input)
+    {
+        if(input.length != inCount)
+            throw new IllegalArgumentException(
+                "input length ["+input.length+"] != "+
+                "input layer size ["+inCount+"]");
+        System.arraycopy(input, 0, this.input, 0, inCount);
+        refresh();
+    }
+
+    /**
+     * Changes one input.
+     *
+     * @param index the index of the input
+     * @param value its new value
+     */
+    public void set(int index, double value)
+    {
+        final double delta = scales == null
+            ? value - input[index]
+            : (value - input[index]) * scales[index];
+        input[index] = value;
+        if(delta != 0)
+        {
+            final int column = index*firstLayerCount;
+            for(int out=0; out<firstLayerCount; out++)
+            {
+                netpj[out] += columns[column + out] * delta;
+            }
+        }
+        if(++changesSinceRefresh >= REFRESH_INTERVAL) refresh();
+    }
+
+    /**
+     * Changes several inputs.
+     *
+     * @param indexes   the indexes of the inputs
+     * @param values    their new values
+     */
+    public void set(int[] indexes, double[] values)
+    {
+        if(indexes.length != values.length)
+            throw new IllegalArgumentException(
+                "index count ["+indexes.length+"] != "+
+                "value count ["+values.length+"]");
+        for(int k=0; k<indexes.length; k++) set(indexes[k], values[k]);
+    }
+
+    /**
+     * Returns a copy of the current input.
+     *
+     * @return  the current input
+     */
+    public double[] input()
+    {
+        return input.clone();
+    }
+
+    /**
+     * Returns the network output layer's outputs for the current input.
+     *
+     * @return  the outputs
+     */
+    public double[] answer()
+    {
+        ActivationFunction af = net.activationFunction();
+        double[] firstLayer = new double[firstLayerCount];
+        for(int out=0; out<firstLayerCount; out++)
+        {
+            firstLayer[out] = af.f(netpj[out], thetas[out]);
+        }
+        return net.answerFrom(1, firstLayer);
+    }
+
+    private void refresh()
+    {
+        final double[] normalized = net.getNormalization()
+                                       .map(n->n.apply(input))
+                                       .orElse(input);
+        Arrays.fill(netpj, 0);
+        for(int in=0; in<inCount; in++)
+        {
+            final double x = normalized[in];
+            if(x == 0) continue;
+            final int column = in*firstLayerCount;
+            for(int out=0; out<firstLayerCount; out++)
+            {
+                netpj[out] += columns[column + out] * x;
+            }
+        }
+        changesSinceRefresh = 0;
+    }
+}
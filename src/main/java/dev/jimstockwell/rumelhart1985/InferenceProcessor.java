@@ -0,0 +1,309 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers a stream of inputs with a Network,
+ * as a stage in a java.util.concurrent.Flow pipeline.
+ * <p>
+ * Backpressure runs both ways.
+ * Upstream is never asked for more inputs than the buffer can hold,
+ * and outputs are only computed as downstream demands them,
+ * so memory stays bounded whatever the relative speeds.
+ * Buffered inputs are answered in batches of up to the maximum batch size
+ * with the batched forward pass.
+ * <p>
+ * All work happens on the executor, one drain at a time,
+ * so no caller's thread ever blocks or computes.
+ * There may be one subscriber.
+ */
+public final class InferenceProcessor
+implements Flow.Processor<double[], double[]>
+{
+    private final Network network;
+    private final Executor executor;
+    private final int bufferSize;
+    private final int maxBatchSize;
+
+    private final ConcurrentLinkedQueue<double[]> buffer =
+        new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super double[]> downstream;
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile boolean cancelled;
+    private volatile IllegalArgumentException badRequest;
+
+    // Only touched by the drain loop.
+    private long requested;
+    private long consumed;
+    private boolean terminated;
+    private double[][] batch;
+
+    /**
+     * Builds an InferenceProcessor.
+     * By default it runs on the common pool,
+     * buffers 256 inputs and batches up to 64.
+     */
+    public static final class Builder
+    {
+        private Network network;
+        private Executor executor = ForkJoinPool.commonPool();
+        private int bufferSize = 256;
+        private int maxBatchSize = 64;
+
+        /**
+         * Specifies the Network to answer with.
+         *
+         * @param net   the Network
+         * @return      a reference to this builder
+         */
+        public Builder withNetwork(Network net)
+        {
+            this.network = Objects.requireNonNull(net);
+            return this;
+        }
+
+        /**
+         * Specifies the executor the processor runs on.
+         *
+         * @param executor  the executor
+         * @return          a reference to this builder
+         */
+        public Builder withExecutor(Executor executor)
+        {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * Specifies the most inputs requested from upstream
+         * but not yet answered.
+         *
+         * @param size  the buffer size, at least 1
+         * @return      a reference to this builder
+         */
+        public Builder withBufferSize(int size)
+        {
+            if(size < 1)
+                throw new IllegalArgumentException(
+                    "size must be >= 1, but was "+size);
+            this.bufferSize = size;
+            return this;
+        }
+
+        /**
+         * Specifies the most inputs answered in one forward pass.
+         *
+         * @param size  the maximum batch size, at least 1
+         * @return      a reference to this builder
+         */
+        public Builder withMaxBatchSize(int size)
+        {
+            if(size < 1)
+                throw new IllegalArgumentException(
+                    "size must be >= 1, but was "+size);
+            this.maxBatchSize = size;
+            return this;
+        }
+
+        /**
+         * Builds the specified InferenceProcessor.
+         *
+         * @return the built InferenceProcessor
+         */
+        public InferenceProcessor build()
+        {
+            if(network == null)
+                throw new IllegalStateException("no network specified");
+            return new InferenceProcessor(this);
+        }
+    }
+
+    private InferenceProcessor(Builder builder)
+    {
+        network = builder.network;
+        executor = builder.executor;
+        bufferSize = builder.bufferSize;
+        maxBatchSize = Math.min(builder.maxBatchSize, builder.bufferSize);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super double[]> subscriber)
+    {
+        Objects.requireNonNull(subscriber);
+        if(downstream != null)
+        {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override public void request(long n) {}
+                @Override public void cancel() {}
+            });
+            subscriber.onError(
+                new IllegalStateException("already has a subscriber"));
+            return;
+        }
+        downstream = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n)
+            {
+                if(n <= 0)
+                {
+                    badRequest = new IllegalArgumentException(
+                        "request must be > 0, but was "+n);
+                    cancelled = true;
+                }
+                else
+                {
+                    demand.getAndAccumulate(n, (d, m) -> {
+                        long sum = d + m;
+                        return sum < 0 ? Long.MAX_VALUE : sum;
+                    });
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel()
+            {
+                cancelled = true;
+                drain();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription)
+    {
+        if(upstream != null)
+        {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(double[] input)
+    {
+        buffer.offer(Objects.requireNonNull(input));
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable error)
+    {
+        upstreamError = Objects.requireNonNull(error);
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete()
+    {
+        upstreamDone = true;
+        drain();
+    }
+
+    private void drain()
+    {
+        if(wip.getAndIncrement() == 0)
+        {
+            executor.execute(this::drainLoop);
+        }
+    }
+
+    private void drainLoop()
+    {
+        int missed = 1;
+        while(true)
+        {
+            if(!terminated) drainOnce();
+            missed = wip.addAndGet(-missed);
+            if(missed == 0) return;
+        }
+    }
+
+    private void drainOnce()
+    {
+        final Flow.Subscriber<? super double[]> subscriber = downstream;
+
+        if(cancelled)
+        {
+            terminated = true;
+            buffer.clear();
+            if(upstream != null) upstream.cancel();
+            // A bad request is reported; a plain cancel is not.
+            if(badRequest != null && subscriber != null)
+                subscriber.onError(badRequest);
+            return;
+        }
+
+        if(subscriber != null)
+        {
+            long wanted = demand.get();
+            while(wanted > 0 && !buffer.isEmpty() && !cancelled)
+            {
+                final int n = (int) Math.min(
+                    Math.min(wanted, maxBatchSize), buffer.size());
+                if(batch == null || batch.length != n) batch = new double[n][];
+                for(int b=0; b<n; b++) batch[b] = buffer.poll();
+                consumed += n;
+
+                final double[][] outputs;
+                try
+                {
+                    outputs = network.answer(batch);
+                }
+                catch(RuntimeException e)
+                {
+                    terminated = true;
+                    buffer.clear();
+                    if(upstream != null) upstream.cancel();
+                    subscriber.onError(e);
+                    return;
+                }
+                Arrays.fill(batch, null);
+                for(double[] output : outputs) subscriber.onNext(output);
+
+                wanted = wanted == Long.MAX_VALUE
+                    ? Long.MAX_VALUE
+                    : demand.addAndGet(-n);
+            }
+
+            if(upstreamDone && buffer.isEmpty())
+            {
+                terminated = true;
+                if(upstreamError != null)
+                    subscriber.onError(upstreamError);
+                else
+                    subscriber.onComplete();
+                return;
+            }
+        }
+
+        final Flow.Subscription subscription = upstream;
+        if(subscription != null && !upstreamDone)
+        {
+            // Replenish in chunks rather than one input at a time.
+            final long room = bufferSize - (requested - consumed);
+            if(room > 0 && (room >= (bufferSize+1)/2 || requested == 0))
+            {
+                requested += room;
+                subscription.request(room);
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package dev.jimstockwell.rumelhart1985;
+
+/**
+ * One online learning pass over a set of patterns.
+ * <p>
+ * A Network is immutable, so stepping one pattern at a time
+ * through new Networks would copy every weight for every pattern.
+ * Instead the pass copies the weights and thetas into arrays once,
+ * each pattern's step updates those in place,
+ * and one new Network is built from them when the pass is done.
+ * <p>
+ * A sparse input is never made dense.
+ * The first layer's sums and weight updates
+ * visit only the input's non-zero entries,
+ * so that layer's work for each pattern is proportional to
+ * the number of non-zero inputs rather than to the number of inputs.
+ * <p>
+ * Each LearningPass learns once. Not thread safe.
+ */
+final class LearningPass
+{
+    private final Network start;
+    private final int[] structure;
+    private final double eta;
+    private final ActivationFunction activationFunction;
+    private final Normalization normalization;  // null for none
+    private final boolean sparseKept;
+    private final double[][][] weights;     // [layer][out][in]
+    private final double[][] thetas;        // [layer][out]
+
+    // Per pattern scratch: each layer's outputs, and deltas from layer 1 on.
+    private final double[][] outputs;
+    private final double[][] deltas;
+
+    /**
+     * Copies a Network's parameters to learn from.
+     *
+     * @param start the Network to start from
+     */
+    LearningPass(Network start)
+    {
+        this.start = start;
+        structure = start.structure();
+        eta = start.eta();
+        activationFunction = start.activationFunction();
+        normalization = start.getNormalization().orElse(null);
+        sparseKept = normalization == null || normalization.preservesZeros();
+
+        final int layers = structure.length-1;
+        weights = new double[layers][][];
+        thetas = new double[layers][];
+        outputs = new double[layers+1][];
+        deltas = new double[layers][];
+        final Weights w = start.getW();
+        final Thetas th = start.thetas();
+        for(int layer=0; layer<layers; layer++)
+        {
+            weights[layer] = new double[structure[layer+1]][structure[layer]];
+            thetas[layer] = new double[structure[layer+1]];
+            for(int out=0; out<structure[layer+1]; out++)
+            {
+                w.copyInboundWeights(layer, out, weights[layer][out]);
+                thetas[layer][out] = th.getTheta(layer, out);
+            }
+            outputs[layer+1] = new double[structure[layer+1]];
+            deltas[layer] = new double[structure[layer+1]];
+        }
+    }
+
+    /**
+     * Learns each pattern once, in order.
+     *
+     * @param pats  the patterns
+     * @param stats where to record each pattern's outputs, or null
+     * @return      the Network with what was learned
+     */
+    Network learn(Patterns pats, EpochStatistics stats)
+    {
+        final boolean sparse = pats.hasSparseInputs() && sparseKept;
+        for(int i=0; i<pats.size(); i++)
+        {
+            final double[] target = pats.getOutputPattern(i);
+            final double multiplicity = pats.getMultiplicity(i);
+            final long steps = pats.stepping().steps(multiplicity);
+            if(sparse)
+            {
+                final SparseVector input = sparseInput(pats, i);
+                forward(input);
+                if(stats != null) stats.record(lastLayer(), target, multiplicity);
+                for(long step=0; step<steps; step++)
+                {
+                    if(step > 0) forward(input);
+                    backward(target);
+                    update(input, eta * multiplicity / steps);
+                }
+            }
+            else
+            {
+                final double[] input = denseInput(pats, i);
+                outputs[0] = input;
+                forward(1);
+                if(stats != null) stats.record(lastLayer(), target, multiplicity);
+                for(long step=0; step<steps; step++)
+                {
+                    if(step > 0) forward(1);
+                    backward(target);
+                    update(0, eta * multiplicity / steps);
+                }
+            }
+        }
+        return Network.Builder.from(start)
+                              .withW(EdgeWeights.adopting(structure, weights))
+                              .withTheta(thetas)
+                              .build();
+    }
+
+    private SparseVector sparseInput(Patterns pats, int i)
+    {
+        final SparseVector raw = pats.getSparseInputPattern(i);
+        if(raw.length() != structure[0])
+            throw new IllegalArgumentException(
+                "input length ["+raw.length()+"] != "+
+                "input layer size ["+structure[0]+"]");
+        return normalization == null ? raw : normalization.apply(raw);
+    }
+
+    private double[] denseInput(Patterns pats, int i)
+    {
+        final double[] raw = pats.getInputPattern(i);
+        if(raw.length != structure[0])
+            throw new IllegalArgumentException(
+                "input length ["+raw.length+"] != "+
+                "input layer size ["+structure[0]+"]");
+        return normalization == null ? raw : normalization.apply(raw);
+    }
+
+    private double[] lastLayer()
+    {
+        return outputs[outputs.length-1];
+    }
+
+    /**
+     * Fills in every layer's outputs from a sparse input.
+     */
+    private void forward(SparseVector input)
+    {
+        final double[][] w = weights[0];
+        final double[] out = outputs[1];
+        for(int node=0; node<out.length; node++)
+        {
+            final double[] inbound = w[node];
+            double netpj = 0;
+            for(int k=0; k<input.nonZeroCount(); k++)
+            {
+                netpj += input.value(k) * inbound[input.index(k)];
+            }
+            out[node] = activationFunction.f(netpj, thetas[0][node]);
+        }
+        forward(2);
+    }
+
+    /**
+     * Fills in the outputs of the layers from firstLayer on,
+     * given the outputs of the layer before it.
+     */
+    private void forward(int firstLayer)
+    {
+        for(int layer=firstLayer; layer<outputs.length; layer++)
+        {
+            final double[] in = outputs[layer-1];
+            final double[][] w = weights[layer-1];
+            final double[] out = outputs[layer];
+            for(int node=0; node<out.length; node++)
+            {
+                final double[] inbound = w[node];
+                double netpj = 0;
+                for(int i=0; i<in.length; i++)
+                {
+                    netpj += in[i] * inbound[i];
+                }
+                out[node] = activationFunction.f(netpj, thetas[layer-1][node]);
+            }
+        }
+    }
+
+    /**
+     * Finds every unit's delta from the current outputs and weights.
+     */
+    private void backward(double[] target)
+    {
+        final int last = deltas.length-1;
+        if(target.length != deltas[last].length)
+            throw new IllegalArgumentException(
+                "target size ["+target.length+"] != " +
+                "final outputs size ["+deltas[last].length+"]");
+
+        for(int node=0; node<target.length; node++)
+        {
+            final double output = outputs[last+1][node];
+            deltas[last][node] = (target[node]-output) *
+                                 activationFunction.slopeForOutput(output);
+        }
+        for(int layer=last-1; layer>=0; layer--)
+        {
+            final double[] next = deltas[layer+1];
+            final double[][] w = weights[layer+1];
+            for(int node=0; node<deltas[layer].length; node++)
+            {
+                double sum = 0;
+                for(int from=0; from<next.length; from++)
+                {
+                    sum += next[from] * w[from][node];
+                }
+                deltas[layer][node] = sum *
+                    activationFunction.slopeForOutput(outputs[layer+1][node]);
+            }
+        }
+    }
+
+    /**
+     * Steps the weights and thetas from firstLayer on,
+     * with the outputs of the layer before it as inputs.
+     * Zero inputs leave their weights alone, so are skipped.
+     */
+    private void update(int firstLayer, double stepEta)
+    {
+        for(int layer=firstLayer; layer<weights.length; layer++)
+        {
+            final double[] in = outputs[layer];
+            for(int node=0; node<weights[layer].length; node++)
+            {
+                final double factor = stepEta * deltas[layer][node];
+                final double[] inbound = weights[layer][node];
+                for(int i=0; i<in.length; i++)
+                {
+                    if(in[i] != 0) inbound[i] += factor * in[i];
+                }
+                thetas[layer][node] += factor;
+            }
+        }
+    }
+
+    /**
+     * Steps the weights and thetas,
+     * touching only the first layer's columns for non-zero inputs.
+     */
+    private void update(SparseVector input, double stepEta)
+    {
+        for(int node=0; node<weights[0].length; node++)
+        {
+            final double factor = stepEta * deltas[0][node];
+            final double[] inbound = weights[0][node];
+            for(int k=0; k<input.nonZeroCount(); k++)
+            {
+                inbound[input.index(k)] += factor * input.value(k);
+            }
+            thetas[0][node] += factor;
+        }
+        update(1, stepEta);
+    }
+}
@@ -1,6 +1,7 @@
 package dev.jimstockwell.rumelhart1985;
 
 import static java.lang.Math.exp;
+import static java.lang.Math.log;
 
 class LogisticActivationFunction implements ActivationFunction
 {
@@ -28,5 +29,15 @@ class LogisticActivationFunction implements ActivationFunction
 
         return output*(1-output);
     }
-}
 
+    /**
+     * Returns the logit of the output.
+     */
+    @Override
+    public double inverse(double output)
+    {
+        if(output <= 0) return Double.NEGATIVE_INFINITY;
+        if(output >= 1) return Double.POSITIVE_INFINITY;
+        return log(output/(1-output));
+    }
+}
@@ -0,0 +1,463 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Command line entry point.
+ * <pre>
+ * train PATTERNS CHECKPOINT --structure 2,5,1 [--eta E] [--epochs N]
+ *       [--checkpoint-every N] [--resume]
+ * predict CHECKPOINT [INPUTS] [--batch N] [--mapped]
+ * bench (CHECKPOINT | --structure S) [--rows N] [--batch N]
+ * </pre>
+ * A patterns file has one pattern per line,
+ * its inputs and targets separated by a semicolon,
+ * values separated by commas or white space.
+ * Blank lines and lines starting with # are ignored.
+ * <p>
+ * predict reads one input per line from INPUTS or standard input
+ * and writes one output per line,
+ * answering large chunks of rows at a time with the batched forward pass.
+ * <p>
+ * Exits with 0 on success, 1 when a file can not be read or written,
+ * 2 on bad usage, and 3 on bad data,
+ * such as a line that is not numbers
+ * or whose width does not match the network.
+ */
+public final class Main
+{
+    private static final Pattern SEPARATOR = Pattern.compile("[,\\s]+");
+    private static final int BUFFER = 1 << 16;
+
+    private static final String USAGE =
+        "usage:\n"+
+        "  train PATTERNS CHECKPOINT --structure 2,5,1 [--eta E] [--epochs N]\n"+
+        "        [--checkpoint-every N] [--resume]\n"+
+        "  predict CHECKPOINT [INPUTS] [--batch N] [--mapped]\n"+
+        "  bench (CHECKPOINT | --structure S) [--rows N] [--batch N]\n";
+
+    private Main() {}
+
+    /**
+     * Thrown when a patterns or inputs file does not hold usable data.
+     */
+    @SuppressWarnings("serial")
+    static final class DataException extends Exception
+    {
+        DataException(String message)
+        {
+            super(message);
+        }
+    }
+
+    /**
+     * Runs a command, exiting with its status.
+     *
+     * @param args  the command and its arguments
+     */
+    public static void main(String[] args)
+    {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /**
+     * Runs a command.
+     *
+     * @return  0 on success, 1 on failure, 2 on bad usage, 3 on bad data
+     */
+    static int run(String[] args, InputStream in, OutputStream out, PrintStream err)
+    {
+        if(args.length == 0)
+        {
+            err.print(USAGE);
+            return 2;
+        }
+        try
+        {
+            String[] rest = Arrays.copyOfRange(args, 1, args.length);
+            switch(args[0])
+            {
+                case "train":
+                    train(new Arguments(rest,
+                            Set.of("resume"),
+                            Set.of("structure", "eta", "epochs", "checkpoint-every")),
+                          out);
+                    break;
+                case "predict":
+                    predict(new Arguments(rest,
+                              Set.of("mapped"),
+                              Set.of("batch")),
+                            in, out);
+                    break;
+                case "bench":
+                    bench(new Arguments(rest,
+                            Set.of(),
+                            Set.of("structure", "rows", "batch")),
+                          out);
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                        "unknown command "+args[0]);
+            }
+            return 0;
+        }
+        catch(IllegalArgumentException e)
+        {
+            err.println(e.getMessage());
+            err.print(USAGE);
+            return 2;
+        }
+        catch(DataException e)
+        {
+            err.println(e.getMessage());
+            return 3;
+        }
+        catch(IOException | UncheckedIOException | IllegalStateException e)
+        {
+            err.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    private static void train(Arguments args, OutputStream out)
+    throws IOException, DataException
+    {
+        Path patternsFile = Paths.get(args.positional(0, "PATTERNS"));
+        Path checkpoint = Paths.get(args.positional(1, "CHECKPOINT"));
+        args.noMorePositionals(2);
+
+        Patterns pats;
+        try(BufferedReader reader = Files.newBufferedReader(patternsFile, UTF_8))
+        {
+            pats = readPatterns(reader);
+        }
+
+        Trainer trainer = new Trainer.Builder()
+            .withEpochs(args.integer("epochs", 1000))
+            .withCheckpointFile(checkpoint)
+            .withCheckpointEveryEpochs(args.integer("checkpoint-every", 0))
+            .build();
+
+        Network net;
+        if(args.flag("resume"))
+        {
+            checkWidths(Checkpoint.read(checkpoint).structure(), pats);
+            net = trainer.resume(pats);
+        }
+        else
+        {
+            Network start = new Network.Builder()
+                .withStructure(args.structure())
+                .withEta(args.real("eta", 1.0))
+                .build();
+            checkWidths(start.structure(), pats);
+            net = trainer.train(start, pats);
+        }
+
+        PrintStream print = new PrintStream(out, true, UTF_8);
+        print.println("loss "+net.loss(pats));
+    }
+
+    /**
+     * Checks patterns fit a network's input and output layers.
+     */
+    private static void checkWidths(int[] structure, Patterns pats)
+    throws DataException
+    {
+        if(pats.size() == 0) return;
+        final int inputs = pats.getInputPattern(0).length;
+        final int outputs = pats.getOutputPattern(0).length;
+        final int last = structure.length-1;
+        if(inputs != structure[0] || outputs != structure[last])
+            throw new DataException(
+                "patterns have "+inputs+" inputs and "+outputs+" targets "+
+                "but the network has "+structure[0]+" inputs and "+
+                structure[last]+" outputs");
+    }
+
+    private static void predict(Arguments args, InputStream in, OutputStream out)
+    throws IOException, DataException
+    {
+        Path checkpoint = Paths.get(args.positional(0, "CHECKPOINT"));
+        String inputs = args.optionalPositional(1);
+        args.noMorePositionals(2);
+        final int batchSize = args.integer("batch", 1024);
+        if(batchSize < 1)
+            throw new IllegalArgumentException("--batch must be >= 1");
+
+        Network net = args.flag("mapped")
+            ? Checkpoint.map(checkpoint)
+            : Checkpoint.read(checkpoint);
+
+        try(BufferedReader reader = inputs == null
+                ? new BufferedReader(new InputStreamReader(in, UTF_8), BUFFER)
+                : Files.newBufferedReader(Paths.get(inputs), UTF_8))
+        {
+            Writer writer = new BufferedWriter(
+                new OutputStreamWriter(out, UTF_8), BUFFER);
+            final int width = net.structure()[0];
+            List<double[]> rows = new ArrayList<>(batchSize);
+            String line;
+            int number = 0;
+            while((line = reader.readLine()) != null)
+            {
+                number++;
+                line = line.strip();
+                if(line.isEmpty()) continue;
+                double[] input = parse(line, number);
+                if(input.length != width)
+                    throw new DataException(
+                        "line "+number+": "+input.length+" inputs "+
+                        "but the network has "+width);
+                rows.add(input);
+                if(rows.size() == batchSize)
+                {
+                    writeAnswers(net, rows, writer);
+                    rows.clear();
+                }
+            }
+            writeAnswers(net, rows, writer);
+            writer.flush();
+        }
+    }
+
+    private static void writeAnswers(Network net, List<double[]> rows, Writer writer)
+    throws IOException
+    {
+        if(rows.isEmpty()) return;
+        StringBuilder line = new StringBuilder();
+        for(double[] output : net.answer(rows.toArray(new double[0][])))
+        {
+            line.setLength(0);
+            for(int i=0; i<output.length; i++)
+            {
+                if(i > 0) line.append(',');
+                line.append(output[i]);
+            }
+            line.append('\n');
+            writer.append(line);
+        }
+    }
+
+    private static void bench(Arguments args, OutputStream out)
+    throws IOException
+    {
+        String checkpoint = args.optionalPositional(0);
+        args.noMorePositionals(1);
+        Network net = checkpoint == null
+            ? new Network.Builder().withStructure(args.structure()).build()
+            : Checkpoint.read(Paths.get(checkpoint));
+        final int rows = args.integer("rows", 100_000);
+        final int batchSize = args.integer("batch", 256);
+        if(rows < 1 || batchSize < 1)
+            throw new IllegalArgumentException("--rows and --batch must be >= 1");
+
+        Random random = new Random(0);
+        double[][] inputs = new double[Math.min(rows, batchSize)][net.structure()[0]];
+        for(double[] input : inputs) Arrays.setAll(input, i->random.nextDouble());
+
+        PrintStream print = new PrintStream(out, true, UTF_8);
+        long start = System.nanoTime();
+        for(int r=0; r<rows; r++) net.answer(inputs[r % inputs.length]);
+        report(print, "single", rows, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for(int r=0; r<rows; r+=inputs.length) net.answer(inputs);
+        report(print, "batched", rows, System.nanoTime() - start);
+    }
+
+    private static void report(PrintStream out, String what, int rows, long nanos)
+    {
+        out.printf("%-8s %,d rows in %.3f s, %,.0f rows/s%n",
+                   what, rows, nanos/1e9, rows/(nanos/1e9));
+    }
+
+    /**
+     * Reads patterns in the command line format.
+     */
+    static Patterns readPatterns(BufferedReader reader)
+    throws IOException, DataException
+    {
+        List<double[][]> patterns = new ArrayList<>();
+        String line;
+        int number = 0;
+        while((line = reader.readLine()) != null)
+        {
+            number++;
+            line = line.strip();
+            if(line.isEmpty() || line.startsWith("#")) continue;
+            String[] halves = line.split(";");
+            if(halves.length != 2)
+                throw new DataException(
+                    "line "+number+": expected inputs ; targets");
+            double[][] pattern = {
+                parse(halves[0].strip(), number),
+                parse(halves[1].strip(), number)};
+            if(!patterns.isEmpty() &&
+               (pattern[0].length != patterns.get(0)[0].length ||
+                pattern[1].length != patterns.get(0)[1].length))
+                throw new DataException(
+                    "line "+number+": "+pattern[0].length+" inputs and "+
+                    pattern[1].length+" targets, unlike the first pattern's "+
+                    patterns.get(0)[0].length+" and "+patterns.get(0)[1].length);
+            patterns.add(pattern);
+        }
+        return new Patterns(patterns.toArray(new double[0][][]));
+    }
+
+    private static double[] parse(String values, int number)
+    throws DataException
+    {
+        String[] fields = SEPARATOR.split(values);
+        double[] parsed = new double[fields.length];
+        for(int i=0; i<fields.length; i++)
+        {
+            try
+            {
+                parsed[i] = Double.parseDouble(fields[i]);
+            }
+            catch(NumberFormatException e)
+            {
+                throw new DataException(
+                    "line "+number+": not a number: "+fields[i]);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Positional arguments, --name flags and --name value options.
+     * Only the flags and options a command knows are accepted,
+     * so a misspelled option is an error rather than ignored.
+     */
+    private static final class Arguments
+    {
+        private final List<String> positionals = new ArrayList<>();
+        private final Map<String, String> options = new HashMap<>();
+
+        Arguments(String[] args, Set<String> flags, Set<String> valued)
+        {
+            for(int i=0; i<args.length; i++)
+            {
+                if(!args[i].startsWith("--"))
+                {
+                    positionals.add(args[i]);
+                    continue;
+                }
+                final String name = args[i].substring(2);
+                if(flags.contains(name))
+                {
+                    options.put(name, "true");
+                }
+                else if(valued.contains(name))
+                {
+                    if(i+1 == args.length)
+                        throw new IllegalArgumentException(
+                            args[i]+" needs a value");
+                    options.put(name, args[++i]);
+                }
+                else
+                {
+                    throw new IllegalArgumentException(
+                        "unknown option "+args[i]);
+                }
+            }
+        }
+
+        String positional(int index, String name)
+        {
+            if(index >= positionals.size())
+                throw new IllegalArgumentException("missing "+name);
+            return positionals.get(index);
+        }
+
+        String optionalPositional(int index)
+        {
+            return index < positionals.size() ? positionals.get(index) : null;
+        }
+
+        void noMorePositionals(int count)
+        {
+            if(positionals.size() > count)
+                throw new IllegalArgumentException(
+                    "unexpected argument "+positionals.get(count));
+        }
+
+        boolean flag(String name)
+        {
+            return options.containsKey(name);
+        }
+
+        int integer(String name, int otherwise)
+        {
+            String value = options.get(name);
+            try
+            {
+                return value == null ? otherwise : Integer.parseInt(value);
+            }
+            catch(NumberFormatException e)
+            {
+                throw new IllegalArgumentException(
+                    "--"+name+" is not an integer: "+value, e);
+            }
+        }
+
+        double real(String name, double otherwise)
+        {
+            String value = options.get(name);
+            try
+            {
+                return value == null ? otherwise : Double.parseDouble(value);
+            }
+            catch(NumberFormatException e)
+            {
+                throw new IllegalArgumentException(
+                    "--"+name+" is not a number: "+value, e);
+            }
+        }
+
+        int[] structure()
+        {
+            String value = options.get("structure");
+            if(value == null)
+                throw new IllegalArgumentException("--structure is required");
+            int[] structure;
+            try
+            {
+                structure = SEPARATOR.splitAsStream(value)
+                                     .mapToInt(Integer::parseInt)
+                                     .toArray();
+            }
+            catch(NumberFormatException e)
+            {
+                throw new IllegalArgumentException(
+                    "--structure is not a list of integers: "+value, e);
+            }
+            Network.structureInvalidity(structure).ifPresent(
+                s->{throw new IllegalArgumentException(s);});
+            return structure;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+/**
+ * Read-only thetas that are a view over a memory-mapped checkpoint file.
+ * Populating (as learning does) makes ordinary heap based Thetas.
+ */
+final class MappedThetas implements Thetas
+{
+    private final int[] structure; // excludes the input layer
+    private final DoubleBuffer[] layers;
+
+    /**
+     * Maps thetas laid out as in a checkpoint:
+     * by layer, then node, little endian.
+     *
+     * @param channel   an open channel on the checkpoint file.
+     *                  The mapping remains valid after it is closed.
+     * @param start     the file offset of the first theta
+     * @param structure the number of nodes in each layer after the input
+     * @throws          IOException if the file can not be mapped
+     */
+    MappedThetas(FileChannel channel, long start, int[] structure)
+    throws IOException
+    {
+        this.structure = Arrays.copyOf(structure, structure.length);
+        layers = new DoubleBuffer[structure.length];
+
+        long position = start;
+        for(int layer=0; layer<structure.length; layer++)
+        {
+            final long bytes = (long) structure[layer] * Double.BYTES;
+            layers[layer] = channel
+                .map(FileChannel.MapMode.READ_ONLY, position, bytes)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asDoubleBuffer();
+            position += bytes;
+        }
+    }
+
+    @Override
+    public boolean consistentWith(int[] structure)
+    {
+        return Arrays.equals(this.structure, structure);
+    }
+
+    @Override
+    public Thetas populate(BiFunction<Integer,Integer,Double> populator)
+    {
+        return new NodeThetas(structure, populator);
+    }
+
+    @Override
+    public double getTheta(int layer, int node)
+    {
+        Objects.checkIndex(layer, layers.length);
+        return layers[layer].get(node);
+    }
+
+    @Override
+    @Deprecated
+    public double[][] value()
+    {
+        double[][] retval = new double[layers.length][];
+        for(int layer=0; layer<layers.length; layer++)
+        {
+            retval[layer] = new double[structure[layer]];
+            layers[layer].duplicate().get(retval[layer]);
+        }
+        return retval;
+    }
+
+    @Override
+    public int numberOfThetaLayers()
+    {
+        return structure.length;
+    }
+
+    @Override
+    public int sizeOfThetaLayer(int layer)
+    {
+        Objects.checkIndex(layer, structure.length);
+        return structure[layer];
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return ParameterValues.hash(this);
+    }
+
+    /**
+     * MappedThetas equal MappedThetas, NodeThetas or SlicedThetas
+     * holding the same values.
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        if(this == o) return true;
+        if(o == null) return false;
+        if(!ParameterValues.isValueThetas(o)) return false;
+        return ParameterValues.equal(this, (Thetas) o);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MappedThetas"+Arrays.toString(structure);
+    }
+}
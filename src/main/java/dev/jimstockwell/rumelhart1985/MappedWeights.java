@@ -0,0 +1,170 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Read-only weights that are a view over a memory-mapped checkpoint file.
+ * <p>
+ * Nothing is copied onto the heap,
+ * so constructing these takes about the same time whatever their size,
+ * and every process mapping the same file
+ * shares the one copy in the operating system's page cache.
+ * <p>
+ * Populating (as learning does) makes ordinary heap based Weights.
+ */
+final class MappedWeights implements Weights
+{
+    //
+    // A single mapping is limited to 2GB,
+    // so each layer is mapped as one or more segments of whole rows.
+    //
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private final int[] structure;
+    private final int[] rowsPerSegment;      // by layer
+    private final DoubleBuffer[][] segments; // by layer, then segment
+
+    /**
+     * Maps weights laid out as in a checkpoint:
+     * by layer, then out node, then in node, little endian.
+     *
+     * @param channel   an open channel on the checkpoint file.
+     *                  The mapping remains valid after it is closed.
+     * @param start     the file offset of the first weight
+     * @param structure the number of nodes in each layer
+     * @throws          IOException if the file can not be mapped
+     */
+    MappedWeights(FileChannel channel, long start, int[] structure)
+    throws IOException
+    {
+        this.structure = Arrays.copyOf(structure, structure.length);
+        final int layers = structure.length - 1;
+        rowsPerSegment = new int[layers];
+        segments = new DoubleBuffer[layers][];
+
+        long position = start;
+        for(int layer=0; layer<layers; layer++)
+        {
+            final int rows = structure[layer+1];
+            final long rowBytes = (long) structure[layer] * Double.BYTES;
+            rowsPerSegment[layer] = rowBytes == 0
+                ? Math.max(rows, 1)
+                : (int) Math.max(1, Math.min(rows, MAX_SEGMENT_BYTES / rowBytes));
+
+            final int segmentCount =
+                (rows + rowsPerSegment[layer] - 1) / rowsPerSegment[layer];
+            segments[layer] = new DoubleBuffer[segmentCount];
+            for(int s=0; s<segmentCount; s++)
+            {
+                final int segmentRows = Math.min(
+                    rowsPerSegment[layer],
+                    rows - s*rowsPerSegment[layer]);
+                final long bytes = segmentRows * rowBytes;
+                segments[layer][s] = channel
+                    .map(FileChannel.MapMode.READ_ONLY, position, bytes)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+                position += bytes;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes the weights of a structure occupy.
+     *
+     * @param structure the number of nodes in each layer
+     * @return          the size of the weights in bytes
+     */
+    static long bytesFor(int[] structure)
+    {
+        long count = 0;
+        for(int layer=0; layer<structure.length-1; layer++)
+        {
+            count += (long) structure[layer] * structure[layer+1];
+        }
+        return count * Double.BYTES;
+    }
+
+    @Override
+    public Weights populate(Weights.ThreeIntFunction<Double> f)
+    {
+        return new EdgeWeights(structure, f);
+    }
+
+    @Override
+    public boolean consistentWith(int[] structure)
+    {
+        return Arrays.equals(this.structure, structure);
+    }
+
+    @Override
+    public double getWeight(int layer, int outputNode, int inputNode)
+    {
+        Objects.checkIndex(layer, segments.length);
+        Objects.checkIndex(outputNode, structure[layer+1]);
+        Objects.checkIndex(inputNode, structure[layer]);
+
+        final int segment = outputNode / rowsPerSegment[layer];
+        final int row = outputNode % rowsPerSegment[layer];
+        return segments[layer][segment].get(row*structure[layer] + inputNode);
+    }
+
+    @Override
+    public void copyInboundWeights(
+        int layer,
+        int outputNode,
+        double[] destination)
+    {
+        Objects.checkIndex(layer, segments.length);
+        Objects.checkIndex(outputNode, structure[layer+1]);
+
+        final int segment = outputNode / rowsPerSegment[layer];
+        final int row = outputNode % rowsPerSegment[layer];
+        DoubleBuffer view = segments[layer][segment].duplicate();
+        view.position(row*structure[layer]);
+        view.get(destination, 0, structure[layer]);
+    }
+
+    @Override
+    public int numberOfWeightLayers()
+    {
+        return structure.length - 1;
+    }
+
+    @Override
+    public int sizeOfWeightLayer(int layer)
+    {
+        Objects.checkIndex(layer, structure.length-1);
+        return structure[layer+1];
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return ParameterValues.hash(structure, this);
+    }
+
+    /**
+     * MappedWeights equal MappedWeights, EdgeWeights or SlicedWeights
+     * holding the same values.
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        if(this == o) return true;
+        if(o == null) return false;
+        if(!ParameterValues.isValueWeights(o)) return false;
+        return ParameterValues.equal(structure, this, (Weights) o);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MappedWeights"+Arrays.toString(structure);
+    }
+}
@@ -0,0 +1,326 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the recently used ones of many Networks in memory,
+ * loading the others on demand.
+ * <p>
+ * Each resident Network is charged its footprint,
+ * estimated from its structure.
+ * When the total exceeds the byte budget
+ * the least recently used Networks are evicted.
+ * A Network larger than the whole budget is returned but not kept.
+ * <p>
+ * Concurrent requests for the same missing model share one load.
+ * Failed loads are not cached; the next request tries again.
+ * A Network invalidated while it is loading is returned to the requests
+ * already waiting for it, but not kept.
+ * <p>
+ * Thread safe.
+ */
+public final class ModelCache
+{
+    /**
+     * Loads the Network with a given id.
+     */
+    @FunctionalInterface
+    public interface Loader
+    {
+        /**
+         * Loads a Network.
+         *
+         * @param id    the id of the Network to load
+         * @return      the Network
+         * @throws      IOException if the Network can not be loaded
+         */
+        Network load(String id) throws IOException;
+    }
+
+    private final Loader loader;
+    private final long byteBudget;
+
+    // Guarded by this.
+    private final LinkedHashMap<String, Resident> resident =
+        new LinkedHashMap<>(16, .75f, true);
+    private long residentBytes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Network>> loading =
+        new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Builds a ModelCache.
+     * A loader and a byte budget must be specified.
+     */
+    public static final class Builder
+    {
+        private Loader loader;
+        private long byteBudget = -1;
+
+        /**
+         * Specifies how Networks are loaded.
+         *
+         * @param loader    loads the Network for an id
+         * @return          a reference to this builder
+         */
+        public Builder withLoader(Loader loader)
+        {
+            this.loader = Objects.requireNonNull(loader);
+            return this;
+        }
+
+        /**
+         * Specifies loading checkpoints from a directory,
+         * the Network with id <i>x</i> being the file <i>x</i>.net.
+         *
+         * @param directory the directory of checkpoints
+         * @return          a reference to this builder
+         */
+        public Builder withCheckpointDirectory(Path directory)
+        {
+            Objects.requireNonNull(directory);
+            return withLoader(id->Checkpoint.read(directory.resolve(id+".net")));
+        }
+
+        /**
+         * Specifies the most memory resident Networks may use.
+         *
+         * @param bytes the byte budget, at least 0
+         * @return      a reference to this builder
+         */
+        public Builder withByteBudget(long bytes)
+        {
+            if(bytes < 0)
+                throw new IllegalArgumentException(
+                    "bytes must be >= 0, but was "+bytes);
+            this.byteBudget = bytes;
+            return this;
+        }
+
+        /**
+         * Builds the specified ModelCache.
+         *
+         * @return the built ModelCache
+         */
+        public ModelCache build()
+        {
+            if(loader == null)
+                throw new IllegalStateException("no loader specified");
+            if(byteBudget < 0)
+                throw new IllegalStateException("no byte budget specified");
+            return new ModelCache(this);
+        }
+    }
+
+    private ModelCache(Builder builder)
+    {
+        loader = builder.loader;
+        byteBudget = builder.byteBudget;
+    }
+
+    /**
+     * Returns the Network with the given id,
+     * loading it if it is not resident.
+     *
+     * @param id    the id of the Network
+     * @return      the Network
+     * @throws      IOException if the Network had to be loaded and could not be
+     */
+    public Network get(String id) throws IOException
+    {
+        Objects.requireNonNull(id);
+        synchronized(this)
+        {
+            Resident hit = resident.get(id);
+            if(hit != null)
+            {
+                hits.increment();
+                return hit.net;
+            }
+        }
+        misses.increment();
+
+        CompletableFuture<Network> mine = new CompletableFuture<>();
+        CompletableFuture<Network> shared = loading.putIfAbsent(id, mine);
+        if(shared != null) return join(shared);
+
+        try
+        {
+            // Another load may have finished since our lookup.
+            Network net;
+            synchronized(this)
+            {
+                Resident loaded = resident.get(id);
+                net = loaded == null ? null : loaded.net;
+            }
+            if(net == null)
+            {
+                net = Objects.requireNonNull(loader.load(id));
+                admit(id, net, mine);
+            }
+            mine.complete(net);
+            return net;
+        }
+        catch(IOException | RuntimeException | Error e)
+        {
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            loading.remove(id, mine);
+        }
+    }
+
+    private static Network join(CompletableFuture<Network> future)
+    throws IOException
+    {
+        try
+        {
+            return future.join();
+        }
+        catch(CompletionException e)
+        {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException)
+                throw new IOException(cause.getMessage(), cause);
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if(cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+
+    private synchronized void admit(
+        String id,
+        Network net,
+        CompletableFuture<Network> load)
+    {
+        // Invalidated while loading: what was loaded may be stale.
+        if(loading.get(id) != load) return;
+
+        Resident entry = new Resident(net);
+        if(entry.bytes > byteBudget) return;
+
+        Resident replaced = resident.put(id, entry);
+        if(replaced != null) residentBytes -= replaced.bytes;
+        residentBytes += entry.bytes;
+
+        Iterator<Resident> lru = resident.values().iterator();
+        while(residentBytes > byteBudget && lru.hasNext())
+        {
+            residentBytes -= lru.next().bytes;
+            lru.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Removes a Network, so the next request for it loads it afresh.
+     *
+     * @param id    the id of the Network to remove
+     */
+    public synchronized void invalidate(String id)
+    {
+        loading.remove(id);
+        Resident removed = resident.remove(id);
+        if(removed != null) residentBytes -= removed.bytes;
+    }
+
+    /**
+     * Returns the estimated memory used by resident Networks.
+     *
+     * @return  the resident footprint in bytes
+     */
+    public synchronized long residentBytes()
+    {
+        return residentBytes;
+    }
+
+    /**
+     * Returns the number of resident Networks.
+     *
+     * @return  the number of resident Networks
+     */
+    public synchronized int size()
+    {
+        return resident.size();
+    }
+
+    /**
+     * Returns the number of requests answered from memory.
+     *
+     * @return  the number of hits
+     */
+    public long hits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests that needed a load,
+     * including those that shared another request's load.
+     *
+     * @return  the number of misses
+     */
+    public long misses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of Networks evicted to stay within budget.
+     *
+     * @return  the number of evictions
+     */
+    public long evictions()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * Estimates the heap used by a Network of the given structure:
+     * 8 bytes per weight and theta,
+     * plus a header per row array.
+     */
+    static long footprint(int[] structure)
+    {
+        final long arrayHeader = 16;
+        final long reference = 8;
+        long bytes = 0;
+        for(int layer=0; layer<structure.length-1; layer++)
+        {
+            final long in = structure[layer];
+            final long out = structure[layer+1];
+            bytes += arrayHeader + out*reference;                  // weight rows
+            bytes += out*(arrayHeader + in*Double.BYTES);          // weights
+            bytes += arrayHeader + out*Double.BYTES;               // thetas
+        }
+        return bytes;
+    }
+
+    private static final class Resident
+    {
+        final Network net;
+        final long bytes;
+
+        Resident(Network net)
+        {
+            this.net = net;
+            this.bytes = footprint(net.structure());
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Serves the latest Network checkpointed into a directory,
+ * switching to each new one as it appears.
+ * <p>
+ * A background thread watches the directory.
+ * When a checkpoint is created or replaced it is loaded, validated,
+ * and warmed up with forward passes
+ * (so the JIT has compiled the inference path
+ * and, for mapped checkpoints, the pages have been touched)
+ * before it replaces the live Network in one atomic step.
+ * Callers of <code>current</code> never wait on a load
+ * and never see a cold or invalid Network.
+ * <p>
+ * A checkpoint that can not be read, or whose input or output layer
+ * differs from the live Network's, is skipped and the live Network kept.
+ * Files ending in ".part" are ignored,
+ * as those are the temporary files Checkpoint.write moves into place.
+ */
+public final class ModelRegistry implements Closeable
+{
+    private final Path directory;
+    private final int warmUpPasses;
+    private final boolean mapped;
+    private final WatchService watcher;
+    private final Thread thread;
+    private final AtomicReference<Network> live = new AtomicReference<>();
+    private final AtomicLong swaps = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * Builds a ModelRegistry.
+     * By default checkpoints are read into the heap
+     * and warmed up with 1000 forward passes.
+     */
+    public static final class Builder
+    {
+        private Path directory;
+        private int warmUpPasses = 1000;
+        private boolean mapped;
+
+        /**
+         * Specifies the directory of checkpoints to watch.
+         *
+         * @param directory the directory to watch
+         * @return          a reference to this builder
+         */
+        public Builder withDirectory(Path directory)
+        {
+            this.directory = Objects.requireNonNull(directory);
+            return this;
+        }
+
+        /**
+         * Specifies the number of forward passes
+         * a new Network gets before going live.
+         *
+         * @param passes    the number of warm up passes, at least 0
+         * @return          a reference to this builder
+         */
+        public Builder withWarmUpPasses(int passes)
+        {
+            if(passes < 0)
+                throw new IllegalArgumentException(
+                    "passes must be >= 0, but was "+passes);
+            this.warmUpPasses = passes;
+            return this;
+        }
+
+        /**
+         * Specifies whether checkpoints are memory mapped
+         * rather than read into the heap.
+         *
+         * @param mapped    true to map checkpoints
+         * @return          a reference to this builder
+         * @see             Checkpoint#map
+         */
+        public Builder withMemoryMapping(boolean mapped)
+        {
+            this.mapped = mapped;
+            return this;
+        }
+
+        /**
+         * Builds the specified ModelRegistry and starts it watching.
+         * The newest checkpoint already in the directory, if any,
+         * is loaded before this returns.
+         *
+         * @return              the built ModelRegistry
+         * @throws IOException  if the directory can not be watched
+         */
+        public ModelRegistry build() throws IOException
+        {
+            if(directory == null)
+                throw new IllegalStateException("no directory specified");
+            return new ModelRegistry(this);
+        }
+    }
+
+    private ModelRegistry(Builder builder) throws IOException
+    {
+        directory = builder.directory;
+        warmUpPasses = builder.warmUpPasses;
+        mapped = builder.mapped;
+        watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+
+        try(Stream<Path> files = Files.list(directory))
+        {
+            newest(files.filter(ModelRegistry::isCheckpoint))
+                .ifPresent(this::consider);
+        }
+
+        thread = new Thread(this::watch, "model-registry-"+directory);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the live Network.
+     *
+     * @return  the live Network
+     * @throws  IllegalStateException if no checkpoint has loaded yet
+     */
+    public Network current()
+    {
+        Network net = live.get();
+        if(net == null)
+            throw new IllegalStateException(
+                "no checkpoint has loaded from "+directory);
+        return net;
+    }
+
+    /**
+     * Returns the live Network, if a checkpoint has loaded.
+     *
+     * @return  the live Network
+     */
+    public Optional<Network> tryCurrent()
+    {
+        return Optional.ofNullable(live.get());
+    }
+
+    /**
+     * Returns the number of times a Network has gone live.
+     *
+     * @return  the number of Networks that have gone live
+     */
+    public long swaps()
+    {
+        return swaps.get();
+    }
+
+    /**
+     * Returns the number of checkpoints skipped as unreadable or invalid.
+     *
+     * @return  the number of checkpoints skipped
+     */
+    public long rejections()
+    {
+        return rejections.get();
+    }
+
+    /**
+     * Stops watching the directory.
+     * The live Network remains available.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        watcher.close();
+        try
+        {
+            thread.join();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watch()
+    {
+        try
+        {
+            while(true)
+            {
+                WatchKey key = watcher.take();
+                // A failure with one batch of changes must not stop hot reload.
+                try
+                {
+                    changed(key);
+                }
+                catch(IOException | RuntimeException e)
+                {
+                    rejections.incrementAndGet();
+                }
+            }
+        }
+        catch(ClosedWatchServiceException | InterruptedException e)
+        {
+            // closed
+        }
+    }
+
+    /**
+     * Considers the newest checkpoint among one batch of changes.
+     */
+    private void changed(WatchKey key) throws IOException
+    {
+        Set<Path> changed = new LinkedHashSet<>();
+        boolean overflowed = false;
+        for(WatchEvent<?> event : key.pollEvents())
+        {
+            if(event.kind() == OVERFLOW)
+                overflowed = true;
+            else
+                changed.add(directory.resolve((Path) event.context()));
+        }
+        key.reset();
+
+        if(overflowed)
+        {
+            try(Stream<Path> files = Files.list(directory))
+            {
+                files.forEach(changed::add);
+            }
+        }
+        newest(changed.stream().filter(ModelRegistry::isCheckpoint))
+            .ifPresent(this::consider);
+    }
+
+    private static boolean isCheckpoint(Path file)
+    {
+        return !file.getFileName().toString().endsWith(".part") &&
+               Files.isRegularFile(file);
+    }
+
+    private static Optional<Path> newest(Stream<Path> files)
+    {
+        return files.max(Comparator.comparing(ModelRegistry::lastModified));
+    }
+
+    private static FileTime lastModified(Path file)
+    {
+        try
+        {
+            return Files.getLastModifiedTime(file);
+        }
+        catch(IOException e)
+        {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Loads, validates and warms up a checkpoint,
+     * then makes it live.
+     */
+    private void consider(Path file)
+    {
+        final Network net;
+        try
+        {
+            net = mapped ? Checkpoint.map(file) : Checkpoint.read(file);
+        }
+        catch(IOException | RuntimeException e)
+        {
+            rejections.incrementAndGet();
+            return;
+        }
+
+        // Checkpoint has already validated the structure and weights.
+        if(!compatibleWithLive(net.structure()))
+        {
+            rejections.incrementAndGet();
+            return;
+        }
+
+        warmUp(net);
+        live.set(net);
+        swaps.incrementAndGet();
+    }
+
+    /**
+     * Reports whether callers of the live Network
+     * can use one of this structure unchanged.
+     */
+    private boolean compatibleWithLive(int[] structure)
+    {
+        Network current = live.get();
+        if(current == null) return true;
+        int[] was = current.structure();
+        return was[0] == structure[0] &&
+               was[was.length-1] == structure[structure.length-1];
+    }
+
+    private void warmUp(Network net)
+    {
+        Random random = new Random(0);
+        double[] input = new double[net.structure()[0]];
+        for(int pass=0; pass<warmUpPasses; pass++)
+        {
+            net.answer(input);
+            Arrays.setAll(input, i->random.nextDouble());
+        }
+    }
+}
@@ -6,10 +6,8 @@ import java.util.ArrayList;
 import java.util.Random;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.IntFunction;
 import java.util.function.IntPredicate;
 import java.util.function.IntToDoubleFunction;
-import java.util.function.BiFunction;
 import java.util.stream.Stream;
 import java.util.stream.IntStream;
 import static dev.jimstockwell.rumelhart1985.ArraysExtended.twoDCopyOf;
@@ -51,6 +49,10 @@ public final class Network
     private final Weights weights;   
     private final Thetas thetas;
     private final ActivationFunction activationFunction;
+    private final Normalization normalization; // null for none
+
+    // How close each output must be to its target for learning to stop.
+    private static final double TOLERANCE = .1;
 
     /**
      * Any defensive copies are made and validation is done in Network,
@@ -65,6 +67,7 @@ public final class Network
         private Double eta = 1.0;
         private ActivationFunction activationFunction = 
                 new LogisticActivationFunction();
+        private Normalization normalization;
 
         /**
          * Returns a new Builder to make the specified Network.
@@ -88,6 +91,7 @@ public final class Network
             other.thetas = net.thetas;
             other.eta = net.eta;
             other.activationFunction = net.activationFunction;
+            other.normalization = net.normalization;
             return other;
         }
 
@@ -188,6 +192,27 @@ public final class Network
             return this;
         }
 
+        /**
+         * Specifies the Thetas to use, without copying them.
+         *
+         * @param thetas    the Thetas to use.
+         *                  It is expected to be effectively immutable.
+         *
+         * @return a reference to this builder
+         */
+        Builder withThetas(Thetas thetas)
+        {
+            int[] structureLessInputLayer =
+                IntStream.of(structure).skip(1).toArray();
+            if(!thetas.consistentWith(structureLessInputLayer))
+                throw new IllegalArgumentException(
+                    "thetas are not consistent with structure "+
+                    Arrays.toString(structure));
+
+            this.thetas = thetas;
+            return this;
+        }
+
         private void thetaIsValidOrThrow(double[][] theta)
         {
             if(theta == null) throw new IllegalArgumentException();
@@ -214,6 +239,21 @@ public final class Network
          * @return a reference to this builder
          */
         public Builder withEta(double eta) { this.eta = eta; return this; }
+
+        /**
+         * Specifies the Normalization applied to every input
+         * before the first layer, both when learning and when answering.
+         *
+         * @param normalization the Normalization to use,
+         *                      or null for none
+         *
+         * @return a reference to this builder
+         */
+        public Builder withNormalization(Normalization normalization)
+        {
+            this.normalization = normalization;
+            return this;
+        }
     }
 
     /**
@@ -241,6 +281,11 @@ public final class Network
         wIsValidOrThrow(weights);
         thetas = builder.thetas;
         activationFunction = builder.activationFunction;
+        normalization = builder.normalization;
+        if(normalization != null && normalization.width() != structure[0])
+            throw new IllegalArgumentException(
+                "normalization width ["+normalization.width()+"] != "+
+                "input layer size ["+structure[0]+"]");
     }
 
     /**
@@ -310,6 +355,47 @@ public final class Network
         return thetas.value();
     }
 
+    /**
+     * Returns a copy of the structure,
+     * the number of nodes per layer, input layer first.
+     *
+     * @return  a copy of the structure
+     */
+    public int[] structure()
+    {
+        return Arrays.copyOf(structure, structure.length);
+    }
+
+    /**
+     * Returns the learning step size.
+     *
+     * @return  eta, the learning step size
+     */
+    public double eta()
+    {
+        return eta;
+    }
+
+    Thetas thetas()
+    {
+        return thetas;
+    }
+
+    ActivationFunction activationFunction()
+    {
+        return activationFunction;
+    }
+
+    /**
+     * Returns the Normalization applied to inputs, if there is one.
+     *
+     * @return  the Normalization applied to inputs
+     */
+    public Optional<Normalization> getNormalization()
+    {
+        return Optional.ofNullable(normalization);
+    }
+
     /**
      * Updates the network for the given patterns and number of iterations.
      *
@@ -326,10 +412,16 @@ public final class Network
                      .get();
     }
 
+    /**
+     * Learns until every output is within TOLERANCE of its target.
+     * For patterns that can't be learned this never returns;
+     * Trainer can bound it by time, cancellation or a loss plateau.
+     */
     Network learn(Patterns pats)
     {
+        final ToleranceCheck check = new ToleranceCheck(this, pats, TOLERANCE);
         return Stream.iterate(this, net -> oneLearningPass(net, pats))
-                     .dropWhile(net -> !net.closeEnough(pats))
+                     .dropWhile(net -> !check.passes(net))
                      .findFirst()
                      .get();
     }
@@ -342,26 +434,28 @@ public final class Network
      */
     private static Network oneLearningPass(Network netIn, Patterns pats)
     {
-        Network net = netIn;
-        for(int patIdx=0; patIdx<pats.size(); patIdx++)
-        {
-            net = sweepBackAndForward(net, pats, patIdx);
-        }
-        return net;
+        return oneLearningPass(netIn, pats, null);
     }
 
     /**
-     * Does a back and forward pass for a single pattern,
-     * returning a new network.
-     * @param in the original network
-     * @param pats the collection of patterns that this pattern will come from
-     * @param i the index of the particular pattern to sweep forward and back
-     * @return a new network, updated for the one pattern
+     * Does one learning pass,
+     * recording the outputs it computes along the way.
+     *
+     * @param pats  the patterns to use in this learning pass
+     * @param stats where to record each pattern's outputs
+     * @return      a new network, updated for the set of patterns
      */
-    private static Network sweepBackAndForward(Network in, Patterns pats, int i)
+    Network learnOnce(Patterns pats, EpochStatistics stats)
+    {
+        return oneLearningPass(this, pats, Objects.requireNonNull(stats));
+    }
+
+    private static Network oneLearningPass(
+        Network netIn,
+        Patterns pats,
+        EpochStatistics stats)
     {
-            Outputs outputs = sweepForward(in, pats.getInputPattern(i));
-            return sweepBack(pats.getOutputPattern(i), outputs, in);
+        return new LearningPass(netIn).learn(pats, stats);
     }
 
     double loss(Patterns pats)
@@ -373,8 +467,8 @@ public final class Network
 
     private double loss(Patterns pats, int idx)
     {
-        return lossForOnePattern(
-            answer(pats.getInputPattern(idx)),
+        return pats.getMultiplicity(idx) * lossForOnePattern(
+            answer(pats, idx),
             pats.getOutputPattern(idx));
     }
 
@@ -390,104 +484,97 @@ public final class Network
                         .sum();
     }
 
-    private boolean closeEnough(Patterns pats)
+    /**
+     * Reports whether every output is within a tolerance of its target.
+     * To check many Networks against the same patterns,
+     * build one ToleranceCheck and reuse it.
+     *
+     * @param pats      the patterns to check
+     * @param tolerance how close each output must be to its target
+     * @return          true if every output is close enough
+     */
+    boolean closeEnough(Patterns pats, double tolerance)
     {
-        IntPredicate closeEnoughByIndex =
-            patIdx -> closeEnoughForOnePattern(
-                    answer(pats.getInputPattern(patIdx)),
-                    pats.getOutputPattern(patIdx));
-
-        return IntStream.range(0,pats.size())
-                        .allMatch(closeEnoughByIndex);
+        return new ToleranceCheck(this, pats, tolerance).passes(this);
     }
 
-    private static
-    boolean closeEnoughForOnePattern(double[] output, double[] target)
+    private static Outputs sweepForward(Network start, double[] inputPattern)
     {
-        if(output.length != target.length) throw new IllegalArgumentException();
-
-        IntFunction<Boolean> okayAtIndex =
-            i -> Math.abs(target[i]-output[i]) < .1;
+        double[][] outs = new double[start.structure.length][];
+        outs[0] = start.normalization == null
+            ? inputPattern
+            : start.normalization.apply(inputPattern);
 
-        return IntStream.range(0,output.length)
-                        .mapToObj(okayAtIndex)
-                        .reduce(true,(a,b)->a && b);
+        return sweepForward(start, outs, 1);
     }
 
     /**
-     * Do a back propigation pass.
-     * @param targetArray the Network output target
-     * @param outputs outputs of each node for the current pattern
-     * @param net the network, including weights, that we are sweeping back on
-     * @return a new Network, updated by the back propigation pass.
+     * Returns the network output for a sparse input.
+     * Only the non-zero inputs contribute to the first layer,
+     * so that is all that is iterated,
+     * and the input is never made dense.
      */
-    private static Network sweepBack(
-        double[] targetArray,
-        Outputs outputs,
-        Network net)
-    {
-        Target target = new Target(targetArray);
-
-        Deltas deltas = new ArrayDeltas(
-            target,
-            outputs,
-            net.weights,
-            net.activationFunction);
-
-        Weights weights = newWeights(net, outputs, deltas);
-        Thetas thetas = newThetas(net, deltas);
-        return Builder.from(net)
-                      .withW(weights)
-                      .withTheta(thetas.value())
-                      .build();
+    private double[] answer(SparseVector rawInput)
+    {
+        if(rawInput.length() != structure[0])
+            throw new IllegalArgumentException(
+                "input length ["+rawInput.length()+"] != "+
+                "input layer size ["+structure[0]+"]");
+
+        final SparseVector inputPattern = normalization == null
+            ? rawInput
+            : normalization.apply(rawInput);
+
+        return answerFrom(1, firstLayer(inputPattern));
     }
 
     /**
-     * Returns the "next" weights
-     * as we evolve the parameters one step at a time
-     * toward a minimum loss.
-     *
-     * This is based on a single input/output patten.
-     *
-     * @param outputs   the output at each node
-     *                  for the current weights and input pattern
-     * @param deltas    the deltas at each node
-     *                  for the current input and output pattern.
-     * @return          new adjusted weights
+     * Returns the first layer's outputs for a (normalized) sparse input.
      */
-    private static Weights newWeights(
-        Network net,
-        Outputs outputs,
-        Deltas deltas)
+    private double[] firstLayer(SparseVector inputPattern)
     {
-        Weights.ThreeIntFunction<Double> weightChange = (layer,out,in) ->
-             net.eta * deltas.getDelta(layer,out) * outputs.get(layer,in);
-
-        Weights deltaW = net.weights.populate(weightChange);
-        return net.weights.add(deltaW);
+        IntToDoubleFunction nodeToOutput =
+            node -> sparseUnitOutput(
+                activationFunction,
+                inputPattern,
+                weights,
+                node,
+                thetas);
+        return IntStream.range(0, thetas.sizeOfThetaLayer(0))
+                        .mapToDouble(nodeToOutput)
+                        .toArray();
     }
 
     /**
-     * Returns the "next" thetas
-     * as we evolve the parameters one step at a time
-     * toward a minimum loss.
+     * Returns the outputs of the layer feeding the output layer
+     * for the input of the specified pattern:
+     * the normalized input itself when there is no hidden layer.
+     * Sparse inputs take the sparse path, as in answering.
      */
-    private static Thetas newThetas(Network net, Deltas deltas)
+    double[] inputsToOutputLayer(Patterns pats, int idx)
     {
-        BiFunction<Integer,Integer,Double> thetaChange = (layer,node) ->
-            net.eta * deltas.getDelta(layer,node);
-
-        Thetas deltaTh = net.thetas.populate(thetaChange);
-        return net.thetas.add(deltaTh);
+        final int last = structure.length-1;
+        if(last > 1 && pats.hasSparseInputs() && staysSparse())
+        {
+            final SparseVector raw = pats.getSparseInputPattern(idx);
+            return forward(1, last-1, firstLayer(
+                normalization == null ? raw : normalization.apply(raw)));
+        }
+        final double[] raw = pats.getInputPattern(idx);
+        return forward(0, last-1,
+                       normalization == null ? raw : normalization.apply(raw));
     }
 
-
-    private static Outputs sweepForward(Network start, double[] inputPattern)
+    /**
+     * Fills in the outputs of the layers from firstLayer on,
+     * given the outputs of the layers before it.
+     */
+    private static Outputs sweepForward(
+        Network start,
+        double[][] outs,
+        int firstLayer)
     {
-        double[][] outs = new double[start.structure.length][];
-        outs[0] = inputPattern;
-
-        for(int layer=1; layer<start.structure.length; layer++)
+        for(int layer=firstLayer; layer<start.structure.length; layer++)
         {
             assert outs.length > layer-1;
             assert layer-1 >= 0;
@@ -544,6 +631,44 @@ public final class Network
         return activationFunction.f(netpj, theta.getTheta(wLayer,outNode));
     }
 
+    /**
+     * Computes the output for a first layer unit from a sparse input.
+     * @param inputs the non-zero inputs
+     * @return the output for this unit
+     */
+    private static double sparseUnitOutput(
+        ActivationFunction activationFunction,
+        SparseVector inputs,
+        Weights weights,
+        int outNode,
+        Thetas theta)
+    {
+        double netpj = 0;
+        for(int k=0; k<inputs.nonZeroCount(); k++)
+        {
+            netpj += inputs.value(k) * weights.getWeight(0,outNode,inputs.index(k));
+        }
+
+        return activationFunction.f(netpj, theta.getTheta(0,outNode));
+    }
+
+    /**
+     * Returns the network output for the input of the specified pattern,
+     * taking the sparse path when the patterns prefer it
+     * and normalization won't make the inputs dense anyway.
+     */
+    private double[] answer(Patterns pats, int idx)
+    {
+        return pats.hasSparseInputs() && staysSparse()
+            ? answer(pats.getSparseInputPattern(idx))
+            : answer(pats.getInputPattern(idx));
+    }
+
+    private boolean staysSparse()
+    {
+        return normalization == null || normalization.preservesZeros();
+    }
+
     /**
      * Returns a copy of the network output layer's outputs.
      * @param inputPattern  the inputs
@@ -551,17 +676,239 @@ public final class Network
      *                      If there is no network, so no output pattern,
      *                      a zero length answer array is returned.
      */
-    double[] answer(double[] inputPattern)
+    public double[] answer(double[] inputPattern)
     {
         return sweepForward(this, inputPattern).getLastLayer()
                                                .orElse(new double[] {});
     }
-    
+
+    /**
+     * Returns the network output layer's outputs for each of a batch of inputs.
+     * <p>
+     * Each unit's inbound weights are fetched once per batch
+     * and applied to every input while they are in cache,
+     * rather than once per input as with single answers.
+     *
+     * @param inputPatterns the inputs, each the size of the input layer
+     * @return              the outputs, one row per input
+     */
+    public double[][] answer(double[][] inputPatterns)
+    {
+        final int batch = inputPatterns.length;
+        double[][] activations = new double[batch][];
+        for(int b=0; b<batch; b++)
+        {
+            if(inputPatterns[b].length != structure[0])
+                throw new IllegalArgumentException(
+                    "input length ["+inputPatterns[b].length+"] != "+
+                    "input layer size ["+structure[0]+"]");
+            activations[b] = normalization == null
+                ? inputPatterns[b]
+                : normalization.apply(inputPatterns[b]);
+        }
+
+        for(int layer=0; layer<structure.length-1; layer++)
+        {
+            double[][] next = new double[batch][structure[layer+1]];
+            double[] inbound = new double[structure[layer]];
+            for(int out=0; out<structure[layer+1]; out++)
+            {
+                weights.copyInboundWeights(layer, out, inbound);
+                final double theta = thetas.getTheta(layer, out);
+                for(int b=0; b<batch; b++)
+                {
+                    final double[] in = activations[b];
+                    double netpj = 0;
+                    for(int i=0; i<in.length; i++)
+                    {
+                        netpj += in[i] * inbound[i];
+                    }
+                    next[b][out] = activationFunction.f(netpj, theta);
+                }
+            }
+            activations = next;
+        }
+        return activations;
+    }
+
+    /**
+     * Returns just the specified units of the network output layer's outputs.
+     * <p>
+     * Only the units the requested outputs depend on are computed.
+     * Working back from the requested outputs,
+     * a unit is needed if it has a non-zero weight into a needed unit,
+     * so pruned (zeroed) weights shrink the cone of units evaluated.
+     * In a fully connected network every hidden unit is needed,
+     * but of the output layer only the requested rows of weights are read.
+     *
+     * @param inputPattern  the inputs
+     * @param outputIndexes the output units wanted
+     * @return              those units' outputs, in the order requested
+     */
+    public double[] answer(double[] inputPattern, int[] outputIndexes)
+    {
+        final int last = structure.length-1;
+        if(inputPattern.length != structure[0])
+            throw new IllegalArgumentException(
+                "input length ["+inputPattern.length+"] != "+
+                "input layer size ["+structure[0]+"]");
+        for(int index : outputIndexes)
+        {
+            if(index < 0 || index >= structure[last])
+                throw new IllegalArgumentException(
+                    "output index "+index+" is not in [0,"+structure[last]+")");
+        }
+
+        // Back from the requested outputs,
+        // fetching the inbound weights of each needed unit once.
+        double[][][] rows = new double[structure.length][][];
+        rows[last] = new double[structure[last]][];
+        for(int index : outputIndexes)
+        {
+            if(rows[last][index] == null)
+            {
+                rows[last][index] = new double[structure[last-1]];
+                weights.copyInboundWeights(last-1, index, rows[last][index]);
+            }
+        }
+        for(int layer=last; layer>1; layer--)
+        {
+            rows[layer-1] = new double[structure[layer-1]][];
+            for(double[] inbound : rows[layer])
+            {
+                if(inbound == null) continue;
+                for(int j=0; j<inbound.length; j++)
+                {
+                    if(inbound[j] != 0 && rows[layer-1][j] == null)
+                    {
+                        rows[layer-1][j] = new double[structure[layer-2]];
+                        weights.copyInboundWeights(layer-2, j, rows[layer-1][j]);
+                    }
+                }
+            }
+        }
+
+        // Forward through just the needed units.
+        double[] activations = normalization == null
+            ? inputPattern
+            : normalization.apply(inputPattern);
+        for(int layer=1; layer<=last; layer++)
+        {
+            double[] next = new double[structure[layer]];
+            for(int node=0; node<next.length; node++)
+            {
+                final double[] inbound = rows[layer][node];
+                if(inbound == null) continue;
+                double netpj = 0;
+                for(int i=0; i<inbound.length; i++)
+                {
+                    netpj += activations[i] * inbound[i];
+                }
+                next[node] = activationFunction.f(
+                    netpj, thetas.getTheta(layer-1, node));
+            }
+            activations = next;
+        }
+
+        final double[] outputs = activations;
+        return IntStream.of(outputIndexes)
+                        .mapToDouble(index -> outputs[index])
+                        .toArray();
+    }
+
+    /**
+     * Returns the network output layer's outputs,
+     * given the outputs of one layer.
+     *
+     * @param layer         the layer whose outputs are given,
+     *                      zero being the (already normalized) input layer
+     * @param activations   that layer's outputs
+     * @return              the outputs
+     */
+    double[] answerFrom(int layer, double[] activations)
+    {
+        return forward(layer, structure.length-1, activations);
+    }
+
+    /**
+     * Returns the outputs of layer <code>to</code>,
+     * given the outputs of an earlier layer.
+     */
+    private double[] forward(int layer, int to, double[] activations)
+    {
+        double[] outs = activations;
+        for(int wLayer=layer; wLayer<to; wLayer++)
+        {
+            outs = answerOneLayer(activationFunction, outs, weights, wLayer, thetas);
+        }
+        return outs;
+    }
+
     Outputs outputs(double[] inputPattern)
     {
         return sweepForward(this, inputPattern);
     }
 
+    /**
+     * Returns layers [from, to) of this network as a network of their own,
+     * layer <code>from</code> being its input layer.
+     * For example, layers(0,2) of a 4-2-4 encoder is the 4-2 encoding half,
+     * and layers(1,3) the 2-4 decoding half.
+     * <p>
+     * The weights and thetas are viewed in place, not copied.
+     * The normalization is kept only if the input layer is.
+     *
+     * @param from  the first layer, zero being the input layer
+     * @param to    one past the last layer, at least from+2
+     * @return      the layers as a network
+     */
+    public Network layers(int from, int to)
+    {
+        if(from < 0 || to > structure.length || to-from < 2)
+            throw new IllegalArgumentException(
+                "layers ["+from+","+to+") are not two or more of "+
+                Arrays.toString(structure));
+
+        final int[] slice = Arrays.copyOfRange(structure, from, to);
+        final int[] sliceLessInputLayer = Arrays.copyOfRange(slice, 1, slice.length);
+        return Builder.from(this)
+                      .withStructure(slice)
+                      .withW(new SlicedWeights(weights, from, slice))
+                      .withThetas(new SlicedThetas(thetas, from, sliceLessInputLayer))
+                      .withNormalization(from == 0 ? normalization : null)
+                      .build();
+    }
+
+    /**
+     * Returns the outputs of one layer for each of a batch of inputs,
+     * such as the hidden layer's representation of them in an encoder.
+     *
+     * @param inputPatterns the inputs, each the size of the input layer
+     * @param layer         the layer wanted, zero being the input layer
+     *                      (given after any normalization)
+     * @return              the layer's outputs, one row per input
+     */
+    public double[][] activations(double[][] inputPatterns, int layer)
+    {
+        Objects.checkIndex(layer, structure.length);
+        if(layer == 0)
+        {
+            double[][] retval = new double[inputPatterns.length][];
+            for(int b=0; b<inputPatterns.length; b++)
+            {
+                if(inputPatterns[b].length != structure[0])
+                    throw new IllegalArgumentException(
+                        "input length ["+inputPatterns[b].length+"] != "+
+                        "input layer size ["+structure[0]+"]");
+                retval[b] = normalization == null
+                    ? inputPatterns[b].clone()
+                    : normalization.apply(inputPatterns[b]);
+            }
+            return retval;
+        }
+        return layers(0, layer+1).answer(inputPatterns);
+    }
+
     @Override
     public boolean equals(Object o)
     {
@@ -573,7 +920,8 @@ public final class Network
             Arrays.equals(that.structure, this.structure) &&
             that.eta == this.eta &&
             Objects.equals(that.weights, this.weights) &&
-            Objects.equals(that.thetas, this.thetas);
+            Objects.equals(that.thetas, this.thetas) &&
+            Objects.equals(that.normalization, this.normalization);
     }
 
     @Override
@@ -586,7 +934,8 @@ public final class Network
         return Arrays.hashCode(structure) * 31 +
                Objects.hash(eta) * 31 +
                Objects.hashCode(weights) * 31 + // might be null
-               Objects.hashCode(thetas);
+               Objects.hashCode(thetas) * 31 +
+               Objects.hashCode(normalization); // might be null
     }
 }
 
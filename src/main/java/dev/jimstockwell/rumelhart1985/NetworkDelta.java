@@ -0,0 +1,465 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The lossless difference between two Networks of the same structure,
+ * such as consecutive checkpoints of one training run.
+ * <p>
+ * Each weight and theta is XORed bit for bit with its earlier value.
+ * Nearby doubles share their sign, exponent and leading mantissa bits,
+ * so most of each XOR is zero bits.
+ * The XORs are then stored in blocks of 4096 values,
+ * each byte plane by byte plane
+ * (every value's most significant byte, then every value's next byte...)
+ * so the zeros line up in long runs,
+ * and the blocks are deflated as one stream.
+ * Only a block at a time is held uncompressed,
+ * so the size of a delta's Networks is limited only by the Networks,
+ * and the compressed delta fitting in a byte array.
+ * <p>
+ * The delta records checksums of both Networks,
+ * so applying it to the wrong base, or a corrupted transfer, is detected.
+ * <p>
+ * Value class.
+ */
+public final class NetworkDelta
+{
+    static final byte[] MAGIC = "R1985DLT".getBytes(US_ASCII);
+    static final int VERSION = 2;
+
+    // The number of values whose XORs are byte planed together.
+    private static final int BLOCK = 4096;
+
+    private final int[] structure;
+    private final double eta;
+    private final long fromChecksum;
+    private final long toChecksum;
+    private final byte[] compressed;
+
+    private NetworkDelta(
+        int[] structure,
+        double eta,
+        long fromChecksum,
+        long toChecksum,
+        byte[] compressed)
+    {
+        this.structure = structure;
+        this.eta = eta;
+        this.fromChecksum = fromChecksum;
+        this.toChecksum = toChecksum;
+        this.compressed = compressed;
+    }
+
+    /**
+     * Returns the delta that turns one Network into another.
+     *
+     * @param from  the earlier Network
+     * @param to    the later Network
+     * @return      the delta from <code>from</code> to <code>to</code>
+     * @throws      IllegalArgumentException if the Networks differ in
+     *              structure or normalization
+     */
+    public static NetworkDelta between(Network from, Network to)
+    {
+        if(!Arrays.equals(from.structure(), to.structure()))
+            throw new IllegalArgumentException(
+                "structures differ: "+Arrays.toString(from.structure())+
+                " and "+Arrays.toString(to.structure()));
+        if(!from.getNormalization().equals(to.getNormalization()))
+            throw new IllegalArgumentException("normalizations differ");
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try(DeflaterOutputStream out =
+                new DeflaterOutputStream(compressed, deflater, 1 << 16))
+        {
+            final int[] structure = from.structure();
+            Cursor fromCursor = new Cursor(structure);
+            Cursor toCursor = new Cursor(structure);
+            long[] fromBits = new long[BLOCK];
+            long[] toBits = new long[BLOCK];
+            byte[] planes = new byte[BLOCK*Long.BYTES];
+            int n;
+            while((n = fromCursor.read(from, fromBits)) > 0)
+            {
+                toCursor.read(to, toBits);
+                for(int i=0; i<n; i++)
+                {
+                    fromBits[i] ^= toBits[i];
+                }
+                toBytePlanes(fromBits, n, planes);
+                out.write(planes, 0, n*Long.BYTES);
+            }
+        }
+        catch(IOException e)
+        {
+            // a ByteArrayOutputStream does not throw
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            deflater.end();
+        }
+
+        return new NetworkDelta(
+            to.structure(),
+            to.eta(),
+            checksum(from),
+            checksum(to),
+            compressed.toByteArray());
+    }
+
+    /**
+     * Reports whether this delta was made from the specified Network.
+     *
+     * @param base  the Network to check
+     * @return      true if this delta can be applied to <code>base</code>
+     */
+    public boolean appliesTo(Network base)
+    {
+        return Arrays.equals(structure, base.structure()) &&
+               checksum(base) == fromChecksum;
+    }
+
+    /**
+     * Returns the Network this delta leads to from the specified Network.
+     *
+     * @param base  the Network the delta was made from
+     * @return      the later Network, verified against its checksum
+     * @throws      IllegalArgumentException
+     *              if the delta was not made from <code>base</code>
+     * @throws      IllegalStateException
+     *              if the result does not match its recorded checksum
+     */
+    public Network applyTo(Network base)
+    {
+        if(!appliesTo(base))
+            throw new IllegalArgumentException(
+                "delta was not made from the specified network");
+
+        double[][][] w = new double[structure.length-1][][];
+        double[][] thetas = new double[structure.length-1][];
+        for(int layer=0; layer<w.length; layer++)
+        {
+            w[layer] = new double[structure[layer+1]][structure[layer]];
+            thetas[layer] = new double[structure[layer+1]];
+        }
+
+        try(InflaterInputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(compressed)))
+        {
+            Cursor baseCursor = new Cursor(structure);
+            Cursor resultCursor = new Cursor(structure);
+            long[] bits = new long[BLOCK];
+            long[] xors = new long[BLOCK];
+            byte[] planes = new byte[BLOCK*Long.BYTES];
+            int n;
+            while((n = baseCursor.read(base, bits)) > 0)
+            {
+                if(in.readNBytes(planes, 0, n*Long.BYTES) != n*Long.BYTES)
+                    throw new IllegalStateException(
+                        "delta does not match the network");
+                fromBytePlanes(planes, n, xors);
+                for(int i=0; i<n; i++)
+                {
+                    bits[i] ^= xors[i];
+                }
+                resultCursor.write(bits, n, w, thetas);
+            }
+            if(in.read() != -1)
+                throw new IllegalStateException(
+                    "delta does not match the network");
+        }
+        catch(IOException e)
+        {
+            throw new IllegalStateException("delta is corrupt", e);
+        }
+
+        Network result = Network.Builder.from(base)
+                                        .withEta(eta)
+                                        .withW(EdgeWeights.adopting(structure, w))
+                                        .withTheta(thetas)
+                                        .build();
+        if(checksum(result) != toChecksum)
+            throw new IllegalStateException(
+                "applied delta does not match its checksum");
+        return result;
+    }
+
+    /**
+     * Returns the delta in its serialized form, for storage or transfer.
+     *
+     * @return  the serialized delta
+     */
+    public byte[] toBytes()
+    {
+        ByteBuffer buffer = ByteBuffer
+            .allocate(MAGIC.length + 3*Integer.BYTES +
+                      structure.length*Integer.BYTES +
+                      Double.BYTES + 2*Long.BYTES +
+                      compressed.length)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(structure.length);
+        for(int count : structure) buffer.putInt(count);
+        buffer.putDouble(eta);
+        buffer.putLong(fromChecksum);
+        buffer.putLong(toChecksum);
+        buffer.putInt(compressed.length);
+        buffer.put(compressed);
+        return buffer.array();
+    }
+
+    /**
+     * Returns the delta serialized by <code>toBytes</code>.
+     *
+     * @param bytes the serialized delta
+     * @return      the delta
+     * @throws      IllegalArgumentException if the bytes are not a delta
+     */
+    public static NetworkDelta fromBytes(byte[] bytes)
+    {
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes)
+                                          .order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if(!Arrays.equals(magic, MAGIC))
+                throw new IllegalArgumentException("not a network delta");
+            final int version = buffer.getInt();
+            if(version != VERSION)
+                throw new IllegalArgumentException(
+                    "unsupported delta version "+version);
+
+            final int layers = buffer.getInt();
+            if(layers < 2 || layers > Checkpoint.MAX_LAYERS)
+                throw new IllegalArgumentException("bad layer count "+layers);
+            int[] structure = new int[layers];
+            for(int i=0; i<layers; i++) structure[i] = buffer.getInt();
+            Network.structureInvalidity(structure).ifPresent(
+                s->{throw new IllegalArgumentException(s);});
+
+            final double eta = buffer.getDouble();
+            final long fromChecksum = buffer.getLong();
+            final long toChecksum = buffer.getLong();
+            final int length = buffer.getInt();
+            if(length < 0 || length > buffer.remaining())
+                throw new IllegalArgumentException("network delta is truncated");
+            if(length < buffer.remaining())
+                throw new IllegalArgumentException(
+                    "network delta has "+(buffer.remaining()-length)+
+                    " trailing bytes");
+            byte[] compressed = new byte[length];
+            buffer.get(compressed);
+
+            return new NetworkDelta(
+                structure, eta, fromChecksum, toChecksum, compressed);
+        }
+        catch(BufferUnderflowException e)
+        {
+            throw new IllegalArgumentException("network delta is truncated", e);
+        }
+    }
+
+    /**
+     * Returns a checksum of everything a delta reproduces:
+     * structure, eta, weights and thetas.
+     */
+    static long checksum(Network net)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES)
+                                      .order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        for(int count : net.structure())
+        {
+            crc.update(buffer.clear().putInt(count).flip());
+        }
+        crc.update(buffer.clear().putLong(Double.doubleToRawLongBits(net.eta())).flip());
+        Cursor cursor = new Cursor(net.structure());
+        ByteBuffer block = ByteBuffer.allocate(BLOCK*Long.BYTES)
+                                     .order(ByteOrder.LITTLE_ENDIAN);
+        long[] bits = new long[BLOCK];
+        int n;
+        while((n = cursor.read(net, bits)) > 0)
+        {
+            block.clear();
+            for(int i=0; i<n; i++) block.putLong(bits[i]);
+            crc.update(block.flip());
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * A position in the order a delta stores parameters:
+     * every weight, layer by layer and row by row, then every theta.
+     */
+    private static final class Cursor
+    {
+        private final int[] structure;
+        private boolean thetas;     // past the weights
+        private boolean done;       // past the thetas
+        private int layer;
+        private int node;           // out node of a weight, or node of a theta
+        private int in;             // in node of a weight
+
+        Cursor(int[] structure)
+        {
+            this.structure = structure;
+            settle();
+        }
+
+        /**
+         * Reads the raw bits of the next parameters of a Network,
+         * as many as fit in bits.
+         *
+         * @return  the number read, 0 once every parameter has been
+         */
+        int read(Network net, long[] bits)
+        {
+            final Weights weights = net.getW();
+            final Thetas th = net.thetas();
+            int n = 0;
+            for(; n<bits.length && !done; n++, next())
+            {
+                bits[n] = Double.doubleToRawLongBits(thetas
+                    ? th.getTheta(layer, node)
+                    : weights.getWeight(layer, node, in));
+            }
+            return n;
+        }
+
+        /**
+         * Writes the next parameters into weight and theta arrays.
+         */
+        void write(long[] bits, int n, double[][][] weights, double[][] th)
+        {
+            for(int i=0; i<n; i++, next())
+            {
+                final double value = Double.longBitsToDouble(bits[i]);
+                if(thetas) th[layer][node] = value;
+                else weights[layer][node][in] = value;
+            }
+        }
+
+        private void next()
+        {
+            if(thetas) node++;
+            else in++;
+            settle();
+        }
+
+        /**
+         * Moves past the ends of rows and layers onto the next parameter.
+         */
+        private void settle()
+        {
+            while(true)
+            {
+                if(layer == structure.length-1)
+                {
+                    if(thetas)
+                    {
+                        done = true;
+                        return;
+                    }
+                    thetas = true;
+                    layer = 0;
+                    node = 0;
+                }
+                else if(node == structure[layer+1])
+                {
+                    layer++;
+                    node = 0;
+                    in = 0;
+                }
+                else if(!thetas && in == structure[layer])
+                {
+                    node++;
+                    in = 0;
+                }
+                else
+                {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void toBytePlanes(long[] values, int n, byte[] planes)
+    {
+        for(int plane=0; plane<Long.BYTES; plane++)
+        {
+            final int shift = Long.SIZE - Byte.SIZE*(plane+1);
+            for(int i=0; i<n; i++)
+            {
+                planes[plane*n + i] = (byte) (values[i] >>> shift);
+            }
+        }
+    }
+
+    private static void fromBytePlanes(byte[] planes, int n, long[] values)
+    {
+        Arrays.fill(values, 0, n, 0L);
+        for(int plane=0; plane<Long.BYTES; plane++)
+        {
+            final int shift = Long.SIZE - Byte.SIZE*(plane+1);
+            for(int i=0; i<n; i++)
+            {
+                values[i] |= (planes[plane*n + i] & 0xFFL) << shift;
+            }
+        }
+    }
+
+    /**
+     * Returns the size of the compressed XORs in bytes.
+     *
+     * @return  the compressed size
+     */
+    public int compressedSize()
+    {
+        return compressed.length;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if(this == o) return true;
+        if(o == null) return false;
+        if(getClass() != o.getClass()) return false;
+        NetworkDelta that = (NetworkDelta) o;
+        return
+            Arrays.equals(that.structure, this.structure) &&
+            Double.compare(that.eta, this.eta) == 0 &&
+            that.fromChecksum == this.fromChecksum &&
+            that.toChecksum == this.toChecksum &&
+            Arrays.equals(that.compressed, this.compressed);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(
+            Arrays.hashCode(structure),
+            eta,
+            fromChecksum,
+            toChecksum,
+            Arrays.hashCode(compressed));
+    }
+}
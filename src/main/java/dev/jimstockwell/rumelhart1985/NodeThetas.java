@@ -101,17 +101,22 @@ class NodeThetas implements Thetas
 
     @Override public int hashCode()
     {
-        return nodes.hashCode();
+        return ParameterValues.hash(this);
     }
 
+    /**
+     * NodeThetas equal MappedThetas and SlicedThetas
+     * holding the same values.
+     */
     @Override
     public boolean equals(Object o)
     {
         if(this == o) return true;
         if(o == null) return false;
-        if(getClass() != o.getClass()) return false;
-        NodeThetas that = (NodeThetas) o;
-        return this.nodes.equals(that.nodes);
+        if(getClass() == o.getClass())
+            return this.nodes.equals(((NodeThetas) o).nodes);
+        if(!ParameterValues.isValueThetas(o)) return false;
+        return ParameterValues.equal(this, (Thetas) o);
     }
 
     @Override
@@ -0,0 +1,248 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Rescales each input feature before it reaches the first layer,
+ * as <code>(input - offset) * scale</code>.
+ * <p>
+ * Logistic units saturate, and so learn slowly,
+ * when inputs span large ranges.
+ * The statistics are gathered once, in one pass over the patterns,
+ * and then stored with the Network,
+ * so training and later inference apply the same scaling.
+ * <p>
+ * Value class.
+ */
+public final class Normalization
+{
+    private final double[] offsets;
+    private final double[] scales;
+    private final boolean preservesZeros;   // derived from offsets
+
+    private Normalization(double[] offsets, double[] scales)
+    {
+        assert offsets.length == scales.length;
+        this.offsets = offsets;
+        this.scales = scales;
+
+        boolean allZero = true;
+        for(double offset : offsets) allZero &= offset == 0;
+        this.preservesZeros = allZero;
+    }
+
+    /**
+     * Returns a Normalization from explicit offsets and scales.
+     *
+     * @param offsets   per feature, the value subtracted first
+     * @param scales    per feature, the multiplier applied second
+     * @return          the specified Normalization
+     * @throws  IllegalArgumentException
+     *          if the arrays differ in length or hold non-finite values
+     */
+    public static Normalization of(double[] offsets, double[] scales)
+    {
+        Objects.requireNonNull(offsets);
+        Objects.requireNonNull(scales);
+        if(offsets.length != scales.length)
+            throw new IllegalArgumentException(
+                "offset count ["+offsets.length+"] != "+
+                "scale count ["+scales.length+"]");
+        if(!Arrays.stream(offsets).allMatch(Double::isFinite) ||
+           !Arrays.stream(scales).allMatch(Double::isFinite))
+            throw new IllegalArgumentException(
+                "offsets and scales must be finite");
+
+        return new Normalization(offsets.clone(), scales.clone());
+    }
+
+    /**
+     * Returns a Normalization mapping each input feature of the patterns
+     * onto the range 0 to 1.
+     * A feature that never varies is only shifted to 0.
+     *
+     * @param pats  the patterns to gather the minimums and maximums from
+     * @return      the min/max Normalization for the patterns
+     */
+    public static Normalization minMax(Patterns pats)
+    {
+        final int width = pats.inputWidth();
+        double[] mins = new double[width];
+        double[] maxes = new double[width];
+        Arrays.fill(mins, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxes, Double.NEGATIVE_INFINITY);
+
+        double[] row = new double[width];
+        for(int i=0; i<pats.size(); i++)
+        {
+            pats.copyInputPattern(i, row);
+            for(int f=0; f<width; f++)
+            {
+                mins[f] = Math.min(mins[f], row[f]);
+                maxes[f] = Math.max(maxes[f], row[f]);
+            }
+        }
+
+        double[] scales = new double[width];
+        for(int f=0; f<width; f++)
+        {
+            if(pats.size() == 0) mins[f] = maxes[f] = 0;
+            final double range = maxes[f] - mins[f];
+            scales[f] = range > 0 ? 1/range : 1;
+        }
+        return of(mins, scales);
+    }
+
+    /**
+     * Returns a Normalization giving each input feature of the patterns
+     * a mean of 0 and a variance of 1.
+     * Patterns count as many times as their multiplicity.
+     * A feature that never varies is only shifted to 0.
+     *
+     * @param pats  the patterns to gather the means and variances from
+     * @return      the mean/variance Normalization for the patterns
+     */
+    public static Normalization standardize(Patterns pats)
+    {
+        final int width = pats.inputWidth();
+        double[] means = new double[width];
+        double[] sumsOfSquares = new double[width]; // about the mean
+        double totalWeight = 0;
+
+        //
+        // Welford's method, weighted, so one pass is enough
+        // and there is no catastrophic cancellation.
+        //
+        double[] row = new double[width];
+        for(int i=0; i<pats.size(); i++)
+        {
+            final double weight = pats.getMultiplicity(i);
+            if(weight == 0) continue;
+
+            pats.copyInputPattern(i, row);
+            totalWeight += weight;
+            for(int f=0; f<width; f++)
+            {
+                final double difference = row[f] - means[f];
+                means[f] += difference * weight / totalWeight;
+                sumsOfSquares[f] += weight * difference * (row[f] - means[f]);
+            }
+        }
+
+        double[] scales = new double[width];
+        for(int f=0; f<width; f++)
+        {
+            final double variance =
+                totalWeight > 0 ? sumsOfSquares[f] / totalWeight : 0;
+            scales[f] = variance > 0 ? 1/Math.sqrt(variance) : 1;
+        }
+        return of(means, scales);
+    }
+
+    double[] offsets()
+    {
+        return offsets.clone();
+    }
+
+    double[] scales()
+    {
+        return scales.clone();
+    }
+
+    /**
+     * Returns the number of features this Normalization applies to.
+     *
+     * @return  the number of input features
+     */
+    public int width()
+    {
+        return offsets.length;
+    }
+
+    /**
+     * Returns whether an input of zero stays zero.
+     * When it does, sparse inputs stay sparse.
+     *
+     * @return  true if every offset is zero
+     */
+    public boolean preservesZeros()
+    {
+        return preservesZeros;
+    }
+
+    /**
+     * Returns a normalized copy of an input.
+     *
+     * @param input the raw input
+     * @return      the normalized input
+     */
+    public double[] apply(double[] input)
+    {
+        checkWidth(input.length);
+
+        double[] retval = new double[input.length];
+        for(int f=0; f<input.length; f++)
+        {
+            retval[f] = (input[f] - offsets[f]) * scales[f];
+        }
+        return retval;
+    }
+
+    /**
+     * Returns a normalized copy of a sparse input.
+     *
+     * @param input the raw input
+     * @return      the normalized input
+     * @throws      IllegalStateException if zeros are not preserved
+     */
+    SparseVector apply(SparseVector input)
+    {
+        checkWidth(input.length());
+        if(!preservesZeros)
+            throw new IllegalStateException(
+                "normalization would make a sparse input dense");
+
+        int[] indexes = new int[input.nonZeroCount()];
+        double[] values = new double[input.nonZeroCount()];
+        for(int k=0; k<indexes.length; k++)
+        {
+            indexes[k] = input.index(k);
+            values[k] = input.value(k) * scales[indexes[k]];
+        }
+        return new SparseVector(input.length(), indexes, values);
+    }
+
+    private void checkWidth(int length)
+    {
+        if(length != offsets.length)
+            throw new IllegalArgumentException(
+                "input length ["+length+"] != "+
+                "normalization width ["+offsets.length+"]");
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if(this == o) return true;
+        if(o == null) return false;
+        if(getClass() != o.getClass()) return false;
+        Normalization that = (Normalization) o;
+        return
+            Arrays.equals(that.offsets, this.offsets) &&
+            Arrays.equals(that.scales, this.scales);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(offsets) * 31 + Arrays.hashCode(scales);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "offsets: "+Arrays.toString(offsets)+
+               ", scales: "+Arrays.toString(scales);
+    }
+}
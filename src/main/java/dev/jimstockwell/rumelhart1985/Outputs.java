@@ -51,6 +51,15 @@ final class Outputs
         return nodes.sizeOfLayer(layer+1);
     }
 
+    /**
+     * Returns a copy of all the outputs,
+     * indexed by layer (zero is the input layer) and then node.
+     */
+    double[][] values()
+    {
+        return nodes.value();
+    }
+
     int[] sizes()
     {
         return nodes.getStructure();
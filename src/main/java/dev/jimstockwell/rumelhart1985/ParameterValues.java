@@ -0,0 +1,115 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+
+/**
+ * Value equality and hashing for Weights and Thetas
+ * whatever class holds them,
+ * so heap, memory-mapped and sliced parameters of the same values are equal.
+ * <p>
+ * Hashes read only the first parameter of each layer,
+ * so hashing a mapped Network does not fault in every page of its file.
+ */
+final class ParameterValues
+{
+    private ParameterValues() {}
+
+    /**
+     * Reports whether an object is one of the Weights classes
+     * that compare by value with each other.
+     */
+    static boolean isValueWeights(Object o)
+    {
+        final Class<?> c = o.getClass();
+        return c == EdgeWeights.class ||
+               c == MappedWeights.class ||
+               c == SlicedWeights.class;
+    }
+
+    /**
+     * Reports whether an object is one of the Thetas classes
+     * that compare by value with each other.
+     */
+    static boolean isValueThetas(Object o)
+    {
+        final Class<?> c = o.getClass();
+        return c == NodeThetas.class ||
+               c == MappedThetas.class ||
+               c == SlicedThetas.class;
+    }
+
+    /**
+     * Reports whether two Weights of a structure hold the same values.
+     */
+    static boolean equal(int[] structure, Weights a, Weights b)
+    {
+        if(!b.consistentWith(structure)) return false;
+        for(int layer=0; layer<structure.length-1; layer++)
+        {
+            double[] rowA = new double[structure[layer]];
+            double[] rowB = new double[structure[layer]];
+            for(int out=0; out<structure[layer+1]; out++)
+            {
+                a.copyInboundWeights(layer, out, rowA);
+                b.copyInboundWeights(layer, out, rowB);
+                if(!Arrays.equals(rowA, rowB)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a hash of Weights of a structure.
+     */
+    static int hash(int[] structure, Weights w)
+    {
+        int result = Arrays.hashCode(structure);
+        for(int layer=0; layer<structure.length-1; layer++)
+        {
+            if(structure[layer] > 0 && structure[layer+1] > 0)
+                result = result * 31 + Double.hashCode(w.getWeight(layer,0,0));
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether two Thetas hold the same values.
+     */
+    static boolean equal(Thetas a, Thetas b)
+    {
+        final int[] structure = structure(a);
+        if(!b.consistentWith(structure)) return false;
+        for(int layer=0; layer<structure.length; layer++)
+        {
+            for(int node=0; node<structure[layer]; node++)
+            {
+                if(Double.compare(a.getTheta(layer, node),
+                                  b.getTheta(layer, node)) != 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a hash of Thetas.
+     */
+    static int hash(Thetas thetas)
+    {
+        final int[] structure = structure(thetas);
+        int result = Arrays.hashCode(structure);
+        for(int layer=0; layer<structure.length; layer++)
+        {
+            if(structure[layer] > 0)
+                result = result * 31 + Double.hashCode(thetas.getTheta(layer,0));
+        }
+        return result;
+    }
+
+    private static int[] structure(Thetas thetas)
+    {
+        int[] structure = new int[thetas.numberOfThetaLayers()];
+        Arrays.setAll(structure, thetas::sizeOfThetaLayer);
+        return structure;
+    }
+}
@@ -1,7 +1,12 @@
 package dev.jimstockwell.rumelhart1985;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 /**
  * Represents a collection of patterns to use with the network
@@ -11,8 +16,79 @@ public class Patterns
     final int IN = 0;
     final int OUT = 1;
 
-    // patterns[whichPattern][inputOroutput][node]
-    private double[][][] patterns;
+    /**
+     * The ways the values of a side (input or output) of the patterns
+     * may be stored.
+     * Whatever the storage, values are decoded back to doubles when used.
+     */
+    public enum Encoding
+    {
+        /** 8 bytes per value, any double. */
+        DOUBLE(DoubleVectors::new),
+        /** 4 bytes per value, rounded to the nearest float. */
+        FLOAT(FloatVectors::new),
+        /** 1 byte per value, which must be integers from -128 to 127. */
+        BYTE(ByteVectors::new),
+        /** 1 bit per value, which must be 0 or 1. */
+        BIT(BitVectors::new),
+        /** Just the index and value of each non-zero value. */
+        SPARSE(SparseVectors::new);
+
+        private final Function<double[][],Vectors> encoder;
+
+        Encoding(Function<double[][],Vectors> encoder)
+        {
+            this.encoder = encoder;
+        }
+
+        Vectors encode(double[][] rows)
+        {
+            return encoder.apply(rows);
+        }
+    }
+
+    /**
+     * The ways learning may step for a pattern
+     * that stands for several identical patterns.
+     */
+    public enum Stepping
+    {
+        /**
+         * One step scaled up by the multiplicity,
+         * split evenly into the fewest steps
+         * no larger than 16 times eta.
+         * A pattern standing for many copies costs about as much
+         * as one that stands for itself alone.
+         */
+        SCALED(16),
+        /**
+         * One step of eta for each copy, taken back to back,
+         * at the cost of a forward and back pass per copy.
+         */
+        REPEATED(1);
+
+        private final double maxMultiple;
+
+        Stepping(double maxMultiple)
+        {
+            this.maxMultiple = maxMultiple;
+        }
+
+        /**
+         * Returns the number of steps to take for a multiplicity,
+         * each sharing the multiplicity's worth of eta.
+         */
+        long steps(double multiplicity)
+        {
+            return (long) Math.ceil(multiplicity / maxMultiple);
+        }
+    }
+
+    private final Vectors inputs;
+    private final Vectors outputs;
+    private final double[] multiplicities; // null when all are 1
+    private final Stepping stepping;
+    private int hash;   // 0 until hashCode first computes it
 
     /**
      * Constructs a Patterns object from an array.
@@ -28,7 +104,79 @@ public class Patterns
         if(!sideHasUniformLength(p, IN)) throw new IllegalArgumentException();
         if(!sideHasUniformLength(p, OUT)) throw new IllegalArgumentException();
 
-        patterns = ArraysExtended.threeDCopyOf(p);
+        inputs = Encoding.DOUBLE.encode(side(p, IN));
+        outputs = Encoding.DOUBLE.encode(side(p, OUT));
+        multiplicities = null;
+        stepping = Stepping.SCALED;
+    }
+
+    /**
+     * Constructs a Patterns object from already encoded sides.
+     *
+     * @param inputs    the input half of each pattern
+     * @param outputs   the output half of each pattern
+     */
+    Patterns(Vectors inputs, Vectors outputs)
+    {
+        this(inputs, outputs, null);
+    }
+
+    /**
+     * Constructs a Patterns object from already encoded sides,
+     * where each pattern may stand for several identical patterns.
+     *
+     * @param inputs            the input half of each pattern
+     * @param outputs           the output half of each pattern
+     * @param multiplicities    how many patterns each pattern stands for,
+     *                          or null if each stands for just itself.
+     *                          Not copied.
+     */
+    Patterns(Vectors inputs, Vectors outputs, double[] multiplicities)
+    {
+        this(inputs, outputs, multiplicities, Stepping.SCALED);
+    }
+
+    /**
+     * Constructs a Patterns object from already encoded sides,
+     * where each pattern may stand for several identical patterns,
+     * learned as specified.
+     *
+     * @param inputs            the input half of each pattern
+     * @param outputs           the output half of each pattern
+     * @param multiplicities    how many patterns each pattern stands for,
+     *                          or null if each stands for just itself.
+     *                          Not copied.
+     * @param stepping          how learning steps for multiplicities
+     */
+    Patterns(
+        Vectors inputs,
+        Vectors outputs,
+        double[] multiplicities,
+        Stepping stepping)
+    {
+        this.inputs = Objects.requireNonNull(inputs);
+        this.outputs = Objects.requireNonNull(outputs);
+        this.multiplicities = multiplicities;
+        this.stepping = Objects.requireNonNull(stepping);
+
+        if(inputs.size() != outputs.size())
+            throw new IllegalArgumentException(
+                "input count ["+inputs.size()+"] != "+
+                "output count ["+outputs.size()+"]");
+
+        if(multiplicities != null)
+        {
+            if(multiplicities.length != inputs.size())
+                throw new IllegalArgumentException(
+                    "multiplicity count ["+multiplicities.length+"] != "+
+                    "pattern count ["+inputs.size()+"]");
+            for(double m : multiplicities)
+            {
+                if(!(m >= 0) || Double.isInfinite(m))
+                    throw new IllegalArgumentException(
+                        "multiplicity must be finite and >= 0, but was "+m);
+            }
+        }
     }
     
     private boolean sideHasUniformLength(double[][][] pats, int inOrOut)
@@ -39,6 +187,149 @@ public class Patterns
                      .count() <= 1;
     }
 
+    private static double[][] side(double[][][] pats, int inOrOut)
+    {
+        return Arrays.stream(pats)
+                     .map(onePat->onePat[inOrOut])
+                     .toArray(double[][]::new);
+    }
+
+    /**
+     * Returns these same patterns, stored with the specified encodings.
+     * The bit and byte encodings are lossless,
+     * and fail if the values do not fit them.
+     * The float encoding rounds each value to the nearest float.
+     *
+     * @param inputEncoding     the storage to use for the input halves
+     * @param outputEncoding    the storage to use for the output halves
+     * @return                  the re-encoded patterns
+     * @throws  IllegalArgumentException
+     *          if a value can not be represented in the requested encoding
+     */
+    public Patterns encodedAs(Encoding inputEncoding, Encoding outputEncoding)
+    {
+        return new Patterns(
+            inputEncoding.encode(rows(inputs)),
+            outputEncoding.encode(rows(outputs)),
+            multiplicities,
+            stepping);
+    }
+
+    /**
+     * Returns these patterns with exact duplicates collapsed together,
+     * learned with {@link Stepping#SCALED scaled} steps.
+     * Each remaining pattern's multiplicity is the total multiplicity
+     * of the patterns it replaces,
+     * so loss treats it as that many copies,
+     * and learning takes about one pass per unique pattern
+     * rather than one per copy.
+     * <p>
+     * That saving costs some accuracy.
+     * A scaled step follows the gradient where the pattern began,
+     * where the copies' steps would each have followed it afresh,
+     * so larger multiplicities stray further from what the copies learn,
+     * and may overshoot where the copies would not.
+     * See {@link #deduplicated(Stepping)}
+     * to repeat the step for each copy instead.
+     *
+     * @return  the unique patterns, weighted by multiplicity
+     */
+    public Patterns deduplicated()
+    {
+        return deduplicated(Stepping.SCALED);
+    }
+
+    /**
+     * Returns these patterns with exact duplicates collapsed together,
+     * learned with the specified stepping.
+     * Each remaining pattern's multiplicity is the total multiplicity
+     * of the patterns it replaces.
+     * Learning takes a pattern's steps back to back,
+     * rather than spread through the pass as the copies were,
+     * so even repeated steps are close to,
+     * but not the same as, a pass over the originals.
+     * Patterns keep the order of their first appearance,
+     * and each side keeps its encoding.
+     *
+     * @param stepping  how learning steps for a multiplicity
+     * @return          the unique patterns, weighted by multiplicity
+     */
+    public Patterns deduplicated(Stepping stepping)
+    {
+        Objects.requireNonNull(stepping);
+        // maps each unique pattern to its index among the unique patterns
+        Map<PatternKey,Integer> firstIndexes = new LinkedHashMap<>();
+        double[] totals = new double[size()];
+        for(int i=0; i<size(); i++)
+        {
+            PatternKey key = new PatternKey(
+                getInputPattern(i),
+                getOutputPattern(i));
+            int first = firstIndexes.computeIfAbsent(key, k -> firstIndexes.size());
+            totals[first] += getMultiplicity(i);
+        }
+
+        final int uniqueCount = firstIndexes.size();
+        double[][] uniqueIns = new double[uniqueCount][];
+        double[][] uniqueOuts = new double[uniqueCount][];
+        for(Map.Entry<PatternKey,Integer> entry : firstIndexes.entrySet())
+        {
+            uniqueIns[entry.getValue()] = entry.getKey().in;
+            uniqueOuts[entry.getValue()] = entry.getKey().out;
+        }
+
+        return new Patterns(
+            inputs.encoding().encode(uniqueIns),
+            outputs.encoding().encode(uniqueOuts),
+            Arrays.copyOf(totals, uniqueCount),
+            stepping);
+    }
+
+    /**
+     * Hashes and compares the decoded values of one pattern.
+     */
+    private static final class PatternKey
+    {
+        private final double[] in;
+        private final double[] out;
+        private final int hash;
+
+        PatternKey(double[] in, double[] out)
+        {
+            this.in = in;
+            this.out = out;
+            this.hash = Arrays.hashCode(in) * 31 + Arrays.hashCode(out);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(this == o) return true;
+            if(o == null) return false;
+            if(getClass() != o.getClass()) return false;
+            PatternKey that = (PatternKey) o;
+            return
+                Arrays.equals(that.in, this.in) &&
+                Arrays.equals(that.out, this.out);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+    private static double[][] rows(Vectors vectors)
+    {
+        double[][] retval = new double[vectors.size()][];
+        for(int row=0; row<retval.length; row++)
+        {
+            retval[row] = vectors.row(row);
+        }
+        return retval;
+    }
+
     /**
      * The number of patterns in this Patterns
      *
@@ -46,7 +337,7 @@ public class Patterns
      */
     public int size()
     {
-        return patterns.length;
+        return inputs.size();
     }
 
     /**
@@ -57,9 +348,31 @@ public class Patterns
      */
     public double[] getInputPattern(int index)
     {
-        return copyOfPatternHalf(index, IN);
+        return inputs.row(index);
     }
     
+    /**
+     * Decodes the specified input pattern into the provided array,
+     * to avoid allocating when streaming over many patterns.
+     *
+     * @param index         the index of the pattern
+     * @param destination   an array at least as long as the input pattern
+     */
+    void copyInputPattern(int index, double[] destination)
+    {
+        inputs.copyRow(index, destination);
+    }
+
+    /**
+     * Returns the length of each input pattern.
+     *
+     * @return  the length of each input pattern, 0 when there are none
+     */
+    int inputWidth()
+    {
+        return inputs.width();
+    }
+
     /**
      * Gets the specified output pattern
      *
@@ -68,14 +381,52 @@ public class Patterns
      */
     public double[] getOutputPattern(int index)
     {
-        return copyOfPatternHalf(index, OUT);
+        return outputs.row(index);
     }
-    
-    private double[] copyOfPatternHalf(int patternIndex, int inOutIndex)
+
+    /**
+     * Gets how many patterns the specified pattern stands for.
+     * This is 1 unless the patterns have been deduplicated.
+     *
+     * @param index the index of the pattern
+     * @return      the multiplicity of the specified pattern
+     */
+    public double getMultiplicity(int index)
     {
-        return Arrays.copyOf(
-            patterns[patternIndex][inOutIndex],
-            patterns[patternIndex][inOutIndex].length);
+        Objects.checkIndex(index, size());
+        return multiplicities == null ? 1 : multiplicities[index];
+    }
+
+    /**
+     * Returns how learning steps for a pattern's multiplicity.
+     *
+     * @return  the stepping
+     */
+    Stepping stepping()
+    {
+        return stepping;
+    }
+
+    /**
+     * Reports whether the input halves are best used as SparseVectors.
+     * This is the case for sparse and bit encoded inputs.
+     *
+     * @return  true if <code>getSparseInputPattern</code> is preferred
+     */
+    boolean hasSparseInputs()
+    {
+        return inputs.isSparse();
+    }
+
+    /**
+     * Gets the non-zero elements of the specified input pattern
+     *
+     * @param index the index of the pattern to get the input values of
+     * @return      the non-zero input values for the specified pattern
+     */
+    SparseVector getSparseInputPattern(int index)
+    {
+        return inputs.sparseRow(index);
     }
 
     /**
@@ -86,8 +437,16 @@ public class Patterns
      */
     public Patterns onePattern(int index)
     {
-        var patternsAsArray = new double[][][] {patterns[index]};
-        return new Patterns(patternsAsArray);
+        var patternsAsArray = new double[][][] {
+            {getInputPattern(index), getOutputPattern(index)}};
+        if(getMultiplicity(index) == 1 && stepping == Stepping.SCALED)
+            return new Patterns(patternsAsArray);
+
+        return new Patterns(
+            Encoding.DOUBLE.encode(new double[][] {patternsAsArray[0][IN]}),
+            Encoding.DOUBLE.encode(new double[][] {patternsAsArray[0][OUT]}),
+            new double[] {getMultiplicity(index)},
+            stepping);
     }
 
     /**
@@ -130,6 +489,27 @@ public class Patterns
         });
     }
 
+    /**
+     * Returns the decoded patterns as an array,
+     * indexed the same as the array constructor's parameter.
+     */
+    private double[][][] toArray()
+    {
+        double[][][] retval = new double[size()][][];
+        for(int i=0; i<retval.length; i++)
+        {
+            retval[i] = new double[][] {
+                getInputPattern(i),
+                getOutputPattern(i)};
+        }
+        return retval;
+    }
+
+    //
+    // Equality is by decoded value,
+    // so the same patterns stored two different ways are equal.
+    //
+
     @Override
     public boolean equals(Object o)
     {
@@ -137,20 +517,45 @@ public class Patterns
         if(o == null) return false;
         if(getClass() != o.getClass()) return false;
         Patterns pat = (Patterns) o;
-        return Arrays.deepEquals(pat.patterns, this.patterns);
+        return pat.stepping == this.stepping &&
+               pat.inputs.sameValues(this.inputs) &&
+               pat.outputs.sameValues(this.outputs) &&
+               IntStream.range(0, size()).allMatch(
+                   i -> Double.compare(pat.getMultiplicity(i),
+                                       this.getMultiplicity(i)) == 0);
     }
 
+    /**
+     * Hashes every pattern's decoded values and multiplicity,
+     * so as to agree whatever the encoding.
+     * Patterns are immutable,
+     * so the hash is worked out on first use and then kept.
+     */
     @Override
     public int hashCode()
     {
-        return Arrays.deepHashCode(patterns);
+        int result = hash;
+        if(result == 0)
+        {
+            result = Integer.hashCode(size());
+            double[] in = new double[inputs.width()];
+            double[] out = new double[outputs.width()];
+            for(int idx=0; idx<size(); idx++)
+            {
+                inputs.copyRow(idx, in);
+                outputs.copyRow(idx, out);
+                result = result * 31 + Arrays.hashCode(in);
+                result = result * 31 + Arrays.hashCode(out);
+                result = result * 31 + Double.hashCode(getMultiplicity(idx));
+            }
+            hash = result;
+        }
+        return result;
     }
 
     @Override
     public String toString()
     {
-        return Arrays.deepToString(patterns);
+        return Arrays.deepToString(toArray());
     }
 }
-
-
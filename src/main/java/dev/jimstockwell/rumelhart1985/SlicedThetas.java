@@ -0,0 +1,108 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+/**
+ * A run of consecutive layers of another Thetas, viewed in place.
+ * <p>
+ * Nothing is copied;
+ * the view reads through to the underlying Thetas.
+ * <p>
+ * Populating (as learning does) makes ordinary heap based Thetas.
+ */
+final class SlicedThetas implements Thetas
+{
+    private final Thetas whole;
+    private final int firstLayer;
+    private final int[] structure;  // node counts, no input layer
+
+    /**
+     * Views some of the layers of a Thetas.
+     *
+     * @param whole         the Thetas viewed
+     * @param firstLayer    the first layer viewed
+     * @param structure     the node counts of the layers viewed
+     */
+    SlicedThetas(Thetas whole, int firstLayer, int[] structure)
+    {
+        this.whole = Objects.requireNonNull(whole);
+        this.firstLayer = firstLayer;
+        this.structure = Arrays.copyOf(structure, structure.length);
+    }
+
+    @Override
+    public boolean consistentWith(int[] structure)
+    {
+        return Arrays.equals(this.structure, structure);
+    }
+
+    @Override
+    public Thetas populate(BiFunction<Integer,Integer,Double> populator)
+    {
+        return new NodeThetas(structure, populator);
+    }
+
+    @Override
+    public double getTheta(int layer, int node)
+    {
+        Objects.checkIndex(layer, structure.length);
+        return whole.getTheta(firstLayer+layer, node);
+    }
+
+    @Override
+    @Deprecated
+    public double[][] value()
+    {
+        double[][] retval = new double[structure.length][];
+        for(int layer=0; layer<structure.length; layer++)
+        {
+            retval[layer] = new double[structure[layer]];
+            for(int node=0; node<structure[layer]; node++)
+            {
+                retval[layer][node] = getTheta(layer, node);
+            }
+        }
+        return retval;
+    }
+
+    @Override
+    public int numberOfThetaLayers()
+    {
+        return structure.length;
+    }
+
+    @Override
+    public int sizeOfThetaLayer(int layer)
+    {
+        Objects.checkIndex(layer, structure.length);
+        return structure[layer];
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return ParameterValues.hash(this);
+    }
+
+    /**
+     * SlicedThetas equal any SlicedThetas, NodeThetas or MappedThetas
+     * holding the same values,
+     * whatever they are sliced from.
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        if(this == o) return true;
+        if(o == null) return false;
+        if(!ParameterValues.isValueThetas(o)) return false;
+        return ParameterValues.equal(this, (Thetas) o);
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.deepToString(value());
+    }
+}
@@ -0,0 +1,104 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A run of consecutive layers of another Weights, viewed in place.
+ * <p>
+ * Nothing is copied;
+ * the view reads through to the underlying Weights,
+ * which, like all Weights, is expected to be effectively immutable.
+ * <p>
+ * Populating (as learning does) makes ordinary heap based Weights.
+ */
+final class SlicedWeights implements Weights
+{
+    private final Weights whole;
+    private final int firstLayer;
+    private final int[] structure;
+
+    /**
+     * Views some of the weight layers of a Weights.
+     *
+     * @param whole         the Weights viewed
+     * @param firstLayer    the first weight layer viewed
+     * @param structure     the node counts of the layers viewed,
+     *                      the input layer of weight layer firstLayer first
+     */
+    SlicedWeights(Weights whole, int firstLayer, int[] structure)
+    {
+        this.whole = Objects.requireNonNull(whole);
+        this.firstLayer = firstLayer;
+        this.structure = Arrays.copyOf(structure, structure.length);
+    }
+
+    @Override
+    public Weights populate(Weights.ThreeIntFunction<Double> f)
+    {
+        return new EdgeWeights(structure, f);
+    }
+
+    @Override
+    public boolean consistentWith(int[] structure)
+    {
+        return Arrays.equals(this.structure, structure);
+    }
+
+    @Override
+    public double getWeight(int layer, int outputNode, int inputNode)
+    {
+        Objects.checkIndex(layer, structure.length-1);
+        return whole.getWeight(firstLayer+layer, outputNode, inputNode);
+    }
+
+    @Override
+    public void copyInboundWeights(
+        int layer,
+        int outputNode,
+        double[] destination)
+    {
+        Objects.checkIndex(layer, structure.length-1);
+        whole.copyInboundWeights(firstLayer+layer, outputNode, destination);
+    }
+
+    @Override
+    public int numberOfWeightLayers()
+    {
+        return structure.length - 1;
+    }
+
+    @Override
+    public int sizeOfWeightLayer(int layer)
+    {
+        Objects.checkIndex(layer, structure.length-1);
+        return structure[layer+1];
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return ParameterValues.hash(structure, this);
+    }
+
+    /**
+     * SlicedWeights equal any SlicedWeights, EdgeWeights or MappedWeights
+     * holding the same values,
+     * whatever they are sliced from.
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        if(this == o) return true;
+        if(o == null) return false;
+        if(!ParameterValues.isValueWeights(o)) return false;
+        return ParameterValues.equal(structure, this, (Weights) o);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SlicedWeights"+Arrays.toString(structure)+
+               " from layer "+firstLayer+" of "+whole;
+    }
+}
@@ -0,0 +1,166 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A vector held as just its non-zero elements, as index/value pairs.
+ * Indexes are strictly increasing.
+ */
+final class SparseVector
+{
+    private final int length;
+    private final int[] indexes;
+    private final double[] values;
+
+    /**
+     * Constructs a SparseVector from index/value pairs.
+     * The arrays are not copied.
+     *
+     * @param length    the length of the equivalent dense vector
+     * @param indexes   strictly increasing indexes of the non-zero elements
+     * @param values    the values at those indexes
+     */
+    SparseVector(int length, int[] indexes, double[] values)
+    {
+        Objects.requireNonNull(indexes);
+        Objects.requireNonNull(values);
+        if(indexes.length != values.length)
+            throw new IllegalArgumentException(
+                "index count ["+indexes.length+"] != "+
+                "value count ["+values.length+"]");
+        for(int k=0; k<indexes.length; k++)
+        {
+            Objects.checkIndex(indexes[k], length);
+            if(k>0 && indexes[k] <= indexes[k-1])
+                throw new IllegalArgumentException(
+                    "indexes must be strictly increasing");
+        }
+
+        this.length = length;
+        this.indexes = indexes;
+        this.values = values;
+    }
+
+    /**
+     * Returns a SparseVector holding the non-zero elements of a dense vector.
+     *
+     * @param dense the dense vector
+     * @return      the equivalent SparseVector
+     */
+    static SparseVector of(double[] dense)
+    {
+        int count = 0;
+        for(double value : dense)
+        {
+            if(value != 0) count++;
+        }
+
+        int[] indexes = new int[count];
+        double[] values = new double[count];
+        int k = 0;
+        for(int i=0; i<dense.length; i++)
+        {
+            if(dense[i] != 0)
+            {
+                indexes[k] = i;
+                values[k] = dense[i];
+                k++;
+            }
+        }
+        return new SparseVector(dense.length, indexes, values);
+    }
+
+    /**
+     * Returns the length of the equivalent dense vector.
+     *
+     * @return  the length of the equivalent dense vector
+     */
+    int length()
+    {
+        return length;
+    }
+
+    /**
+     * Returns the number of stored (non-zero) elements.
+     *
+     * @return  the number of stored elements
+     */
+    int nonZeroCount()
+    {
+        return indexes.length;
+    }
+
+    /**
+     * Returns the dense index of the k'th stored element.
+     *
+     * @param k the position among the stored elements
+     * @return  the index of that element in the dense vector
+     */
+    int index(int k)
+    {
+        return indexes[k];
+    }
+
+    /**
+     * Returns the value of the k'th stored element.
+     *
+     * @param k the position among the stored elements
+     * @return  the value of that element
+     */
+    double value(int k)
+    {
+        return values[k];
+    }
+
+    /**
+     * Returns the equivalent dense vector.
+     *
+     * @return  a newly allocated dense copy
+     */
+    double[] toArray()
+    {
+        double[] retval = new double[length];
+        for(int k=0; k<indexes.length; k++)
+        {
+            retval[indexes[k]] = values[k];
+        }
+        return retval;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if(this == o) return true;
+        if(o == null) return false;
+        if(getClass() != o.getClass()) return false;
+        SparseVector that = (SparseVector) o;
+        return
+            that.length == this.length &&
+            Arrays.equals(that.indexes, this.indexes) &&
+            Arrays.equals(that.values, this.values);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = Integer.hashCode(length);
+        result = result * 31 + Arrays.hashCode(indexes);
+        result = result * 31 + Arrays.hashCode(values);
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[").append(length).append(": ");
+        for(int k=0; k<indexes.length; k++)
+        {
+            if(k != 0) sb.append(", ");
+            sb.append(indexes[k]).append("=").append(values[k]);
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+}
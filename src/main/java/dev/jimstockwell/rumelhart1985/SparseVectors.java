@@ -0,0 +1,98 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Vectors that are mostly zeros,
+ * stored as just the index/value pairs of their non-zero elements.
+ * All rows share one pair of arrays (compressed sparse row layout).
+ */
+final class SparseVectors implements Vectors
+{
+    private final int size;
+    private final int width;
+    private final int[] rowStarts;  // size+1 entries
+    private final int[] indexes;
+    private final double[] values;
+
+    SparseVectors(double[][] rows)
+    {
+        Objects.requireNonNull(rows);
+
+        size = rows.length;
+        width = Vectors.uniformWidth(rows);
+        rowStarts = new int[size+1];
+        for(int row=0; row<size; row++)
+        {
+            int count = 0;
+            for(double value : rows[row])
+            {
+                if(value != 0) count++;
+            }
+            rowStarts[row+1] = rowStarts[row] + count;
+        }
+
+        indexes = new int[rowStarts[size]];
+        values = new double[rowStarts[size]];
+        for(int row=0; row<size; row++)
+        {
+            int k = rowStarts[row];
+            for(int column=0; column<width; column++)
+            {
+                if(rows[row][column] != 0)
+                {
+                    indexes[k] = column;
+                    values[k] = rows[row][column];
+                    k++;
+                }
+            }
+        }
+    }
+
+    @Override public int size()  { return size; }
+    @Override public int width() { return width; }
+
+    @Override
+    public Patterns.Encoding encoding()
+    {
+        return Patterns.Encoding.SPARSE;
+    }
+
+    @Override
+    public boolean isSparse()
+    {
+        return true;
+    }
+
+    @Override
+    public double get(int row, int column)
+    {
+        Objects.checkIndex(row, size);
+        Objects.checkIndex(column, width);
+        int k = Arrays.binarySearch(
+            indexes, rowStarts[row], rowStarts[row+1], column);
+        return k < 0 ? 0 : values[k];
+    }
+
+    @Override
+    public void copyRow(int row, double[] destination)
+    {
+        Objects.checkIndex(row, size);
+        Arrays.fill(destination, 0, width, 0);
+        for(int k=rowStarts[row]; k<rowStarts[row+1]; k++)
+        {
+            destination[indexes[k]] = values[k];
+        }
+    }
+
+    @Override
+    public SparseVector sparseRow(int row)
+    {
+        Objects.checkIndex(row, size);
+        return new SparseVector(
+            width,
+            Arrays.copyOfRange(indexes, rowStarts[row], rowStarts[row+1]),
+            Arrays.copyOfRange(values, rowStarts[row], rowStarts[row+1]));
+    }
+}
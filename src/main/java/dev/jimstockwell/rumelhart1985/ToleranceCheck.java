@@ -0,0 +1,114 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+
+/**
+ * Reports whether every output is within a tolerance of its target,
+ * for one set of patterns and the Networks learned from one start.
+ * <p>
+ * The activation function is increasing,
+ * so an output is within tolerance exactly when
+ * its netpj+theta lies between the inverses of target-tolerance
+ * and target+tolerance.
+ * Those bounds are worked out once, when the check is built,
+ * and comparing against them skips the activation function
+ * on the output layer.
+ * The first unit out of bounds ends a check.
+ * <p>
+ * One check is meant to be built per run of learning and reused
+ * for each Network along the way:
+ * the bounds and the arrays the output layer is read into
+ * are then allocated once rather than on every check.
+ * <p>
+ * Not thread safe.
+ */
+final class ToleranceCheck
+{
+    private final Patterns pats;
+    private final int[] structure;
+    private final double[][] lower;     // [pattern][output unit]
+    private final double[][] upper;
+
+    // The output layer's rows and thetas, refilled for each Network checked.
+    private final double[][] rows;
+    private final double[] outputThetas;
+
+    /**
+     * Builds the check.
+     *
+     * @param start     the Network learning starts from,
+     *                  which every Network checked must share
+     *                  its structure and activation function with
+     * @param pats      the patterns to check
+     * @param tolerance how close each output must be to its target
+     */
+    ToleranceCheck(Network start, Patterns pats, double tolerance)
+    {
+        this.pats = pats;
+        structure = start.structure();
+        final ActivationFunction activationFunction = start.activationFunction();
+
+        lower = new double[pats.size()][];
+        upper = new double[pats.size()][];
+        for(int patIdx=0; patIdx<pats.size(); patIdx++)
+        {
+            final double[] target = pats.getOutputPattern(patIdx);
+            lower[patIdx] = new double[target.length];
+            upper[patIdx] = new double[target.length];
+            for(int node=0; node<target.length; node++)
+            {
+                lower[patIdx][node] =
+                    activationFunction.inverse(target[node] - tolerance);
+                upper[patIdx][node] =
+                    activationFunction.inverse(target[node] + tolerance);
+            }
+        }
+
+        final int last = structure.length-1;
+        rows = new double[structure[last]][structure[last-1]];
+        outputThetas = new double[structure[last]];
+    }
+
+    /**
+     * Reports whether every output of a Network is close enough.
+     *
+     * @param net   the Network to check
+     * @return      true if every output is within tolerance of its target
+     */
+    boolean passes(Network net)
+    {
+        if(!Arrays.equals(net.structure(), structure))
+            throw new IllegalArgumentException(
+                "network structure "+Arrays.toString(net.structure())+
+                " != checked structure "+Arrays.toString(structure));
+
+        final int last = structure.length-1;
+        final Weights weights = net.getW();
+        final Thetas thetas = net.thetas();
+        for(int node=0; node<rows.length; node++)
+        {
+            weights.copyInboundWeights(last-1, node, rows[node]);
+            outputThetas[node] = thetas.getTheta(last-1, node);
+        }
+
+        for(int patIdx=0; patIdx<pats.size(); patIdx++)
+        {
+            // Patterns with no multiplicity don't count.
+            if(pats.getMultiplicity(patIdx) == 0) continue;
+
+            final double[] in = net.inputsToOutputLayer(pats, patIdx);
+            for(int node=0; node<rows.length; node++)
+            {
+                final double[] inbound = rows[node];
+                double netpj = outputThetas[node];
+                for(int i=0; i<in.length; i++)
+                {
+                    netpj += in[i] * inbound[i];
+                }
+                if(!(lower[patIdx][node] < netpj && netpj < upper[patIdx][node]))
+                    return false;
+            }
+        }
+        return true;
+    }
+}
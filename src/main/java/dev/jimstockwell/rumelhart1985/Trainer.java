@@ -0,0 +1,578 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Trains a Network for a number of epochs,
+ * optionally checkpointing it as it goes
+ * so a run that dies part way through can be resumed.
+ * <p>
+ * Learning is deterministic given the starting Network and the patterns,
+ * and eta is the only optimizer state, which the Network itself holds.
+ * So a Network plus its epoch count is the whole of the training state,
+ * and a resumed run ends with the same Network as an uninterrupted one.
+ * <p>
+ * Networks are immutable, so taking a snapshot costs nothing.
+ * Snapshots are written on a background thread,
+ * and if the writer falls behind only the latest snapshot is kept,
+ * so checkpointing never stalls the training loop.
+ * <p>
+ * Training can also stop early, once every output is within a tolerance
+ * of its target.
+ * That is judged from the outputs the learning pass computes anyway,
+ * rather than by a second forward pass over every pattern.
+ * Those outputs come from the network as it stood before each pattern
+ * was learned, so are a running estimate;
+ * an exact recheck can be asked for when the estimate says converged.
+ * <p>
+ * So that a job's compute is bounded
+ * even when its patterns can not be learned,
+ * training can also stop at a time limit,
+ * when a CancellationToken is cancelled or the thread is interrupted,
+ * or when the loss stops improving.
+ * These are checked between epochs.
+ * {@link #run run} reports which of them stopped training,
+ * along with the best Network seen.
+ * <p>
+ * {@link #start start} trains on an Executor instead,
+ * returning at once with a TrainingJob
+ * that reports progress as training goes.
+ */
+public final class Trainer
+{
+    private final int epochs;
+    private final Path checkpointFile;        // null for no checkpoints
+    private final int checkpointEveryEpochs;  // 0 for never
+    private final Duration checkpointEvery;   // null for never
+    private final double tolerance;           // 0 for no convergence test
+    private final int checkConvergenceEvery;
+    private final boolean exactRecheck;
+    private final Duration timeLimit;         // null for none
+    private final CancellationToken cancellation;   // null for none
+    private final double plateauImprovement;
+    private final int plateauEpochs;          // 0 for no plateau test
+
+    /**
+     * Builds a Trainer.
+     * By default it trains one epoch and writes no checkpoints.
+     */
+    public static final class Builder
+    {
+        private int epochs = 1;
+        private Path checkpointFile;
+        private int checkpointEveryEpochs;
+        private Duration checkpointEvery;
+        private double tolerance;
+        private int checkConvergenceEvery = 1;
+        private boolean exactRecheck;
+        private Duration timeLimit;
+        private CancellationToken cancellation;
+        private double plateauImprovement;
+        private int plateauEpochs;
+
+        /**
+         * Specifies the total number of epochs to train for.
+         * An epoch is a learning pass with each pattern.
+         *
+         * @param epochs    the total number of epochs, at least 0
+         * @return          a reference to this builder
+         */
+        public Builder withEpochs(int epochs)
+        {
+            if(epochs < 0)
+                throw new IllegalArgumentException(
+                    "epochs must be >= 0, but was "+epochs);
+            this.epochs = epochs;
+            return this;
+        }
+
+        /**
+         * Specifies the file checkpoints are written to.
+         * Each checkpoint replaces the last.
+         * A final checkpoint is always written when training ends.
+         *
+         * @param file  the checkpoint file
+         * @return      a reference to this builder
+         */
+        public Builder withCheckpointFile(Path file)
+        {
+            this.checkpointFile = Objects.requireNonNull(file);
+            return this;
+        }
+
+        /**
+         * Specifies checkpointing after every so many epochs.
+         *
+         * @param epochs    the number of epochs between checkpoints,
+         *                  or 0 to not checkpoint by epoch count
+         * @return          a reference to this builder
+         */
+        public Builder withCheckpointEveryEpochs(int epochs)
+        {
+            if(epochs < 0)
+                throw new IllegalArgumentException(
+                    "epochs must be >= 0, but was "+epochs);
+            this.checkpointEveryEpochs = epochs;
+            return this;
+        }
+
+        /**
+         * Specifies checkpointing at the end of the first epoch
+         * at least this long after the last checkpoint.
+         *
+         * @param interval  the minimum time between checkpoints,
+         *                  or null to not checkpoint by time
+         * @return          a reference to this builder
+         */
+        public Builder withCheckpointEvery(Duration interval)
+        {
+            if(interval != null && interval.isNegative())
+                throw new IllegalArgumentException("interval is negative");
+            this.checkpointEvery = interval;
+            return this;
+        }
+
+        /**
+         * Specifies stopping early once every output
+         * is within a tolerance of its target.
+         *
+         * @param tolerance how close each output must be to its target,
+         *                  or 0 to always train for every epoch
+         * @return          a reference to this builder
+         */
+        public Builder withConvergenceTolerance(double tolerance)
+        {
+            if(!(tolerance >= 0))
+                throw new IllegalArgumentException(
+                    "tolerance must be >= 0, but was "+tolerance);
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Specifies how often convergence is tested.
+         *
+         * @param epochs    the number of epochs between tests, at least 1
+         * @return          a reference to this builder
+         */
+        public Builder withConvergenceCheckEvery(int epochs)
+        {
+            if(epochs < 1)
+                throw new IllegalArgumentException(
+                    "epochs must be >= 1, but was "+epochs);
+            this.checkConvergenceEvery = epochs;
+            return this;
+        }
+
+        /**
+         * Specifies whether apparent convergence is confirmed
+         * with a separate pass over the patterns
+         * using the network as it stands after the epoch.
+         *
+         * @param recheck   true to confirm convergence exactly
+         * @return          a reference to this builder
+         */
+        public Builder withExactRecheck(boolean recheck)
+        {
+            this.exactRecheck = recheck;
+            return this;
+        }
+
+        /**
+         * Specifies the longest training may run,
+         * measured from the start of each train, run or resume.
+         *
+         * @param limit the time limit, or null for none
+         * @return      a reference to this builder
+         */
+        public Builder withTimeLimit(Duration limit)
+        {
+            if(limit != null && limit.isNegative())
+                throw new IllegalArgumentException("limit is negative");
+            this.timeLimit = limit;
+            return this;
+        }
+
+        /**
+         * Specifies a token that stops training when cancelled.
+         *
+         * @param token the token, or null for none
+         * @return      a reference to this builder
+         */
+        public Builder withCancellation(CancellationToken token)
+        {
+            this.cancellation = token;
+            return this;
+        }
+
+        /**
+         * Specifies stopping once the loss has not improved
+         * on the best loss so far by a fraction of it
+         * for a number of epochs in a row.
+         *
+         * @param improvement   the smallest relative improvement
+         *                      that counts, more than 0
+         * @param epochs        the number of epochs in a row without one,
+         *                      at least 1
+         * @return              a reference to this builder
+         */
+        public Builder withPlateau(double improvement, int epochs)
+        {
+            if(!(improvement > 0))
+                throw new IllegalArgumentException(
+                    "improvement must be > 0, but was "+improvement);
+            if(epochs < 1)
+                throw new IllegalArgumentException(
+                    "epochs must be >= 1, but was "+epochs);
+            this.plateauImprovement = improvement;
+            this.plateauEpochs = epochs;
+            return this;
+        }
+
+        /**
+         * Builds the specified Trainer.
+         *
+         * @return the built Trainer
+         */
+        public Trainer build()
+        {
+            return new Trainer(this);
+        }
+    }
+
+    private Trainer(Builder builder)
+    {
+        epochs = builder.epochs;
+        checkpointFile = builder.checkpointFile;
+        checkpointEveryEpochs = builder.checkpointEveryEpochs;
+        checkpointEvery = builder.checkpointEvery;
+        tolerance = builder.tolerance;
+        checkConvergenceEvery = builder.checkConvergenceEvery;
+        exactRecheck = builder.exactRecheck;
+        timeLimit = builder.timeLimit;
+        cancellation = builder.cancellation;
+        plateauImprovement = builder.plateauImprovement;
+        plateauEpochs = builder.plateauEpochs;
+    }
+
+    /**
+     * Trains a Network from its first epoch.
+     *
+     * @param start the Network to train
+     * @param pats  the patterns to train it with
+     * @return      the trained Network
+     * @throws      UncheckedIOException if a checkpoint could not be written
+     */
+    public Network train(Network start, Patterns pats)
+    {
+        return train(start, 0, pats, false, null).network();
+    }
+
+    /**
+     * Trains a Network from its first epoch,
+     * reporting the best Network seen and why training stopped.
+     * Each epoch's loss is estimated from the outputs the learning pass
+     * computes anyway, to pick the best candidate and to spot a plateau.
+     * When training stops, that candidate and the last Network
+     * are scored exactly, and the lower is reported as the best.
+     *
+     * @param start the Network to train
+     * @param pats  the patterns to train it with
+     * @return      the result of training
+     * @throws      UncheckedIOException if a checkpoint could not be written
+     */
+    public TrainingResult run(Network start, Patterns pats)
+    {
+        return train(start, 0, pats, true, null);
+    }
+
+    /**
+     * Trains a Network from its first epoch on an Executor,
+     * as {@link #run run} does, without waiting for it.
+     *
+     * @param start     the Network to train
+     * @param pats      the patterns to train it with
+     * @param executor  the executor to train on
+     * @return          the job, which reports progress and completes
+     *                  with the result of training
+     * @throws          java.util.concurrent.RejectedExecutionException
+     *                  if the executor does not accept the job
+     */
+    public TrainingJob start(Network start, Patterns pats, Executor executor)
+    {
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(pats);
+        final TrainingJob job = new TrainingJob(start);
+        executor.execute(() -> {
+            job.begin();
+            try
+            {
+                job.complete(train(start, 0, pats, true, job));
+            }
+            catch(RuntimeException | Error e)
+            {
+                job.fail(e);
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Resumes training from the checkpoint file.
+     * The Network and the number of epochs it had trained are read from it,
+     * and training continues until the total number of epochs is reached
+     * (or, with a convergence tolerance, until it converges).
+     *
+     * @param pats  the patterns to train with,
+     *              which must be the ones training started with
+     * @return      the trained Network
+     * @throws      IOException if the checkpoint can not be read
+     * @throws      IllegalStateException if there is no checkpoint file,
+     *              or it does not record an epoch count
+     */
+    public Network resume(Patterns pats) throws IOException
+    {
+        if(checkpointFile == null)
+            throw new IllegalStateException("no checkpoint file specified");
+
+        final long done = Checkpoint.epochs(checkpointFile);
+        if(done < 0)
+            throw new IllegalStateException(
+                checkpointFile+" does not record an epoch count");
+
+        return train(Checkpoint.read(checkpointFile), done, pats, false, null)
+               .network();
+    }
+
+    private TrainingResult train(
+        Network start,
+        long done,
+        Patterns pats,
+        boolean keepBest,
+        TrainingJob job)        // null for none
+    {
+        Objects.requireNonNull(start);
+        Objects.requireNonNull(pats);
+
+        final long began = System.nanoTime();
+        final boolean trackLoss = keepBest || plateauEpochs > 0;
+        final ToleranceCheck recheck = exactRecheck && tolerance > 0
+            ? new ToleranceCheck(start, pats, tolerance)
+            : null;
+
+        try(Writer writer = checkpointFile == null
+                ? null
+                : new Writer(checkpointFile))
+        {
+            Network net = start;
+            Network best = start;
+            double bestLoss = Double.NaN;
+            int staleEpochs = 0;
+            long epoch = done;
+            long lastCheckpoint = System.nanoTime();
+            TrainingResult.StopReason reason = TrainingResult.StopReason.EPOCHS;
+            while(epoch < epochs)
+            {
+                if(cancellation != null && cancellation.isCancelled() ||
+                   job != null && job.isCancelled())
+                {
+                    reason = TrainingResult.StopReason.CANCELLED;
+                    break;
+                }
+                if(Thread.currentThread().isInterrupted())
+                {
+                    reason = TrainingResult.StopReason.INTERRUPTED;
+                    break;
+                }
+                if(timeLimit != null &&
+                   System.nanoTime() - began >= timeLimit.toNanos())
+                {
+                    reason = TrainingResult.StopReason.DEADLINE;
+                    break;
+                }
+
+                epoch++;
+                final boolean checkConvergence =
+                    tolerance > 0 && epoch % checkConvergenceEvery == 0;
+                final Network before = net;
+                boolean converged = false;
+                boolean plateaued = false;
+                double loss = Double.NaN;
+                if(checkConvergence || trackLoss)
+                {
+                    EpochStatistics stats = new EpochStatistics(tolerance);
+                    net = net.learnOnce(pats, stats);
+                    converged = checkConvergence &&
+                        stats.withinTolerance() &&
+                        (recheck == null || recheck.passes(net));
+
+                    // The pass's outputs mostly reflect the network it began with.
+                    loss = stats.loss();
+                    if(trackLoss)
+                    {
+                        if(Double.isNaN(bestLoss) || loss < bestLoss)
+                        {
+                            final boolean improved = Double.isNaN(bestLoss) ||
+                                bestLoss - loss >= plateauImprovement * bestLoss;
+                            staleEpochs = improved ? 0 : staleEpochs+1;
+                            best = before;
+                            bestLoss = loss;
+                        }
+                        else
+                        {
+                            staleEpochs++;
+                        }
+                        plateaued = plateauEpochs > 0 &&
+                                    staleEpochs >= plateauEpochs;
+                    }
+                }
+                else
+                {
+                    net = net.learn(pats, 1);
+                }
+                if(job != null) job.update(net, epoch, loss);
+                if(converged)
+                {
+                    reason = TrainingResult.StopReason.CONVERGED;
+                    break;
+                }
+                if(plateaued)
+                {
+                    reason = TrainingResult.StopReason.PLATEAU;
+                    break;
+                }
+
+                if(writer == null) continue;
+                boolean byCount = checkpointEveryEpochs > 0 &&
+                                  epoch % checkpointEveryEpochs == 0;
+                boolean byTime = checkpointEvery != null &&
+                    System.nanoTime() - lastCheckpoint >= checkpointEvery.toNanos();
+                if(byCount || byTime)
+                {
+                    writer.offer(net, epoch);
+                    lastCheckpoint = System.nanoTime();
+                }
+            }
+            if(writer != null) writer.finish(net, epoch);
+
+            if(keepBest)
+            {
+                // Compare exact losses, not the estimates that chose best.
+                final double lastLoss = net.loss(pats);
+                bestLoss = best == net ? lastLoss : best.loss(pats);
+                if(lastLoss <= bestLoss)
+                {
+                    best = net;
+                    bestLoss = lastLoss;
+                }
+            }
+            return new TrainingResult(net, best, bestLoss, epoch, reason);
+        }
+    }
+
+    /**
+     * Writes checkpoints on a background thread,
+     * keeping only the latest if it falls behind.
+     */
+    private static final class Writer implements AutoCloseable
+    {
+        private final Path file;
+        private final ExecutorService executor =
+            Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        private final AtomicReference<Snapshot> pending = new AtomicReference<>();
+        private final AtomicReference<IOException> failure =
+            new AtomicReference<>();
+
+        Writer(Path file)
+        {
+            this.file = file;
+        }
+
+        void offer(Network net, long epoch)
+        {
+            if(pending.getAndSet(new Snapshot(net, epoch)) == null)
+            {
+                executor.execute(this::writePending);
+            }
+        }
+
+        private void writePending()
+        {
+            Snapshot snapshot = pending.getAndSet(null);
+            if(snapshot == null) return;
+            try
+            {
+                Checkpoint.write(snapshot.net, snapshot.epoch, file);
+            }
+            catch(IOException e)
+            {
+                failure.compareAndSet(null, e);
+            }
+        }
+
+        /**
+         * Waits for background writes, then writes the final checkpoint.
+         */
+        void finish(Network net, long epoch)
+        {
+            close();
+            try
+            {
+                Checkpoint.write(net, epoch, file);
+            }
+            catch(IOException e)
+            {
+                failure.compareAndSet(null, e);
+            }
+            if(failure.get() != null)
+                throw new UncheckedIOException(
+                    "checkpoint could not be written", failure.get());
+        }
+
+        @Override
+        public void close()
+        {
+            executor.shutdown();
+            // An interrupt stops training, but the final checkpoint
+            // must still land after any background write.
+            boolean interrupted = false;
+            while(true)
+            {
+                try
+                {
+                    if(executor.awaitTermination(1, TimeUnit.MINUTES)) break;
+                }
+                catch(InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Snapshot
+    {
+        final Network net;
+        final long epoch;
+
+        Snapshot(Network net, long epoch)
+        {
+            this.net = net;
+            this.epoch = epoch;
+        }
+    }
+}
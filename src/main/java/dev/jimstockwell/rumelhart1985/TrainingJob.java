@@ -0,0 +1,164 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A Trainer run going on in the background.
+ * <p>
+ * After each epoch the training thread publishes
+ * one immutable snapshot of its progress through a volatile field.
+ * Networks are immutable, so reading the latest one,
+ * or how far training has got, takes no lock
+ * and never slows training down.
+ * <p>
+ * Cancelling the job stops training at the end of the current epoch,
+ * and the futures then complete with the Network trained so far.
+ * Cancelling either future also stops training,
+ * but that future itself completes with a CancellationException,
+ * as does {@link #network network} when it is {@link #result result}
+ * that was cancelled.
+ * <p>
+ * Thread safe.
+ */
+public final class TrainingJob
+{
+    private final CompletableFuture<TrainingResult> result =
+        new CompletableFuture<>();
+    private final CompletableFuture<Network> network;
+    private volatile long started;
+    private volatile Progress progress;
+    private volatile boolean cancelled;
+
+    /**
+     * Where training had got to at the end of an epoch.
+     */
+    private static final class Progress
+    {
+        final Network net;
+        final long epoch;
+        final double loss;
+        final long nanos;
+
+        Progress(Network net, long epoch, double loss, long nanos)
+        {
+            this.net = net;
+            this.epoch = epoch;
+            this.loss = loss;
+            this.nanos = nanos;
+        }
+    }
+
+    TrainingJob(Network start)
+    {
+        progress = new Progress(start, 0, Double.NaN, 0);
+        network = result.thenApply(TrainingResult::network);
+        result.whenComplete(this::cancelIfCancelled);
+        network.whenComplete(this::cancelIfCancelled);
+    }
+
+    private void cancelIfCancelled(Object ignored, Throwable failure)
+    {
+        if(failure instanceof CancellationException) cancelled = true;
+    }
+
+    /**
+     * Returns a future that completes with the trained Network,
+     * unless it or {@link #result result} is cancelled.
+     *
+     * @return  the future Network
+     */
+    public CompletableFuture<Network> network()
+    {
+        return network;
+    }
+
+    /**
+     * Returns a future that completes with the result of training,
+     * including why it stopped and the best Network seen,
+     * unless it is cancelled.
+     *
+     * @return  the future result
+     */
+    public CompletableFuture<TrainingResult> result()
+    {
+        return result;
+    }
+
+    /**
+     * Asks training to stop at the end of the current epoch.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Returns the number of epochs trained so far.
+     *
+     * @return  the number of epochs
+     */
+    public long epoch()
+    {
+        return progress.epoch;
+    }
+
+    /**
+     * Returns the loss the latest epoch's learning pass observed,
+     * a running estimate of the loss of the network it began with.
+     *
+     * @return  the recent loss, or NaN before the first epoch
+     */
+    public double recentLoss()
+    {
+        return progress.loss;
+    }
+
+    /**
+     * Returns the average number of epochs trained per second so far,
+     * from when training began on the executor.
+     *
+     * @return  the throughput in epochs per second
+     */
+    public double epochsPerSecond()
+    {
+        final Progress p = progress;
+        final long elapsed = p.nanos - started;
+        return p.epoch == 0 || elapsed <= 0 ? 0 : p.epoch * 1e9 / elapsed;
+    }
+
+    /**
+     * Returns the Network as of the end of the latest epoch.
+     *
+     * @return  the latest Network
+     */
+    public Network latest()
+    {
+        return progress.net;
+    }
+
+    boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    void begin()
+    {
+        started = System.nanoTime();
+    }
+
+    void update(Network net, long epoch, double loss)
+    {
+        progress = new Progress(net, epoch, loss, System.nanoTime());
+    }
+
+    void complete(TrainingResult trained)
+    {
+        result.complete(trained);
+    }
+
+    void fail(Throwable failure)
+    {
+        result.completeExceptionally(failure);
+    }
+}
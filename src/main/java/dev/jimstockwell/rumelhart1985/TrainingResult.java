@@ -0,0 +1,99 @@
+package dev.jimstockwell.rumelhart1985;
+
+/**
+ * What a Trainer run ended with, and why it stopped.
+ * <p>
+ * Immutable and thread safe.
+ */
+public final class TrainingResult
+{
+    /**
+     * Why training stopped.
+     */
+    public enum StopReason
+    {
+        /** Every epoch asked for was trained. */
+        EPOCHS,
+        /** Every output came within the convergence tolerance. */
+        CONVERGED,
+        /** The loss stopped improving. */
+        PLATEAU,
+        /** The time limit was reached. */
+        DEADLINE,
+        /** The cancellation token was cancelled. */
+        CANCELLED,
+        /** The training thread was interrupted. */
+        INTERRUPTED
+    }
+
+    private final Network last;
+    private final Network best;
+    private final double bestLoss;
+    private final long epochs;
+    private final StopReason reason;
+
+    TrainingResult(
+        Network last,
+        Network best,
+        double bestLoss,
+        long epochs,
+        StopReason reason)
+    {
+        this.last = last;
+        this.best = best;
+        this.bestLoss = bestLoss;
+        this.epochs = epochs;
+        this.reason = reason;
+    }
+
+    /**
+     * Returns the Network as it was when training stopped.
+     *
+     * @return  the last Network
+     */
+    public Network network()
+    {
+        return last;
+    }
+
+    /**
+     * Returns the Network with the lowest loss seen.
+     *
+     * @return  the best Network
+     */
+    public Network best()
+    {
+        return best;
+    }
+
+    /**
+     * Returns the exact loss of the best Network on the patterns.
+     *
+     * @return  the best Network's loss
+     */
+    public double bestLoss()
+    {
+        return bestLoss;
+    }
+
+    /**
+     * Returns the total number of epochs the last Network has trained,
+     * including any before a resume.
+     *
+     * @return  the number of epochs
+     */
+    public long epochs()
+    {
+        return epochs;
+    }
+
+    /**
+     * Returns why training stopped.
+     *
+     * @return  the reason
+     */
+    public StopReason reason()
+    {
+        return reason;
+    }
+}
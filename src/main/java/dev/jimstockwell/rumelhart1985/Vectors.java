@@ -0,0 +1,164 @@
+package dev.jimstockwell.rumelhart1985;
+
+import java.util.Arrays;
+
+/**
+ * A table of equal length vectors of doubles,
+ * such as all the input halves (or all the output halves) of some Patterns.
+ * <p>
+ * Implementations are free to store the values however they like,
+ * so long as what comes back out is what went in.
+ * Each given object is expected to return consistent results.
+ * This is most simply done with an immutable class.
+ */
+interface Vectors
+{
+    /**
+     * Returns the number of vectors in the table.
+     *
+     * @return  the number of vectors
+     */
+    int size();
+
+    /**
+     * Returns the length of each of the vectors.
+     * When there are no vectors, this is zero.
+     *
+     * @return  the length of every vector in the table
+     */
+    int width();
+
+    /**
+     * Returns the encoding the values are stored with.
+     * Re-encoding the rows with it gives equivalent Vectors.
+     *
+     * @return  the encoding of these Vectors
+     */
+    Patterns.Encoding encoding();
+
+    /**
+     * Returns one element of one vector.
+     *
+     * @param row       the index of the vector
+     * @param column    the index of the element within the vector
+     * @return          the decoded value of the element
+     */
+    double get(int row, int column);
+
+    /**
+     * Decodes the specified vector into the provided array.
+     *
+     * @param row           the index of the vector
+     * @param destination   an array at least <code>width()</code> long
+     */
+    default void copyRow(int row, double[] destination)
+    {
+        for(int column=0; column<width(); column++)
+        {
+            destination[column] = get(row, column);
+        }
+    }
+
+    /**
+     * Returns a newly allocated, decoded copy of the specified vector.
+     *
+     * @param row   the index of the vector
+     * @return      a copy of the specified vector
+     */
+    default double[] row(int row)
+    {
+        double[] retval = new double[width()];
+        copyRow(row, retval);
+        return retval;
+    }
+
+    /**
+     * Reports whether the rows are cheaper to use as SparseVectors
+     * than as dense arrays.
+     *
+     * @return  true if <code>sparseRow</code> is the preferred access
+     */
+    default boolean isSparse()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the specified vector as just its non-zero elements.
+     *
+     * @param row   the index of the vector
+     * @return      the non-zero elements of the specified vector
+     */
+    default SparseVector sparseRow(int row)
+    {
+        return SparseVector.of(row(row));
+    }
+
+    /**
+     * Reports whether these Vectors hold the same values as others,
+     * whatever their encodings.
+     * Implementations may compare their encoded storage directly
+     * when both are encoded alike.
+     *
+     * @param that  the other Vectors
+     * @return      true if every vector is the same
+     */
+    default boolean sameValues(Vectors that)
+    {
+        if(size() != that.size()) return false;
+        if(size() == 0) return true;
+        if(width() != that.width()) return false;
+
+        double[] mine = new double[width()];
+        double[] theirs = new double[width()];
+        for(int row=0; row<size(); row++)
+        {
+            this.copyRow(row, mine);
+            that.copyRow(row, theirs);
+            if(!Arrays.equals(mine, theirs)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of elements needed to store a table,
+     * checking it fits in one array.
+     * Once it does, every row*width+column offset within it fits in an int.
+     *
+     * @param rows      the number of rows
+     * @param perRow    the number of elements per row
+     * @return          the number of elements
+     * @throws          IllegalArgumentException if they do not fit in an array
+     */
+    static int elementCount(int rows, int perRow)
+    {
+        try
+        {
+            return Math.multiplyExact(rows, perRow);
+        }
+        catch(ArithmeticException e)
+        {
+            throw new IllegalArgumentException(
+                "too many values for one array: "+rows+" rows of "+perRow);
+        }
+    }
+
+    /**
+     * Checks that every row of a two index array has the same length.
+     *
+     * @param rows  the rows to check
+     * @return      the common row length, or zero if there are no rows
+     * @throws      IllegalArgumentException if the rows are ragged
+     */
+    static int uniformWidth(double[][] rows)
+    {
+        final int width = rows.length == 0 ? 0 : rows[0].length;
+        for(double[] row : rows)
+        {
+            if(row.length != width)
+                throw new IllegalArgumentException(
+                    "rows have differing lengths: "+width+" and "+row.length);
+        }
+        return width;
+    }
+}
@@ -69,6 +69,27 @@ public interface Weights
      */
     double getWeight(int layer, int outputNode, int inputNode);
 
+    /**
+     * Copies all the weights into one node
+     * (from every node of the prior layer) into an array.
+     * Implementations backed by arrays can do this in bulk.
+     *
+     * @param layer         0 is the layer of weights
+     *                      connected to the network inputs
+     * @param outputNode    the node in the layer closer to network output
+     * @param destination   an array at least as long as the prior layer
+     */
+    default void copyInboundWeights(
+        int layer,
+        int outputNode,
+        double[] destination)
+    {
+        for(int inputNode=0; inputNode<destination.length; inputNode++)
+        {
+            destination[inputNode] = getWeight(layer, outputNode, inputNode);
+        }
+    }
+
     /**
      * Returns the number of <b>weight</b> layers.
      * That is, one less than the number of node layers.
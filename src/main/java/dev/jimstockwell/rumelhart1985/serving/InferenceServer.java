@@ -0,0 +1,613 @@
+package dev.jimstockwell.rumelhart1985.serving;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import dev.jimstockwell.rumelhart1985.Network;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Serves a Network's answers over HTTP.
+ * <p>
+ * It is kept out of the core package
+ * so only users of it need the jdk.httpserver module.
+ * <p>
+ * <code>POST /predict</code> takes one input per line,
+ * its values separated by commas or white space,
+ * and responds with one output per line, comma separated.
+ * <p>
+ * Inputs from concurrent requests are gathered into micro-batches
+ * and answered with one batched forward pass.
+ * A batch goes as soon as it reaches the maximum batch size.
+ * Otherwise, while traffic is concurrent
+ * (the last batch held more than one input)
+ * a batch waits up to the maximum wait for company;
+ * when it is not, a lone input goes at once
+ * so light traffic pays no added latency.
+ * <p>
+ * Requests are handled on a fixed number of threads,
+ * and a request body over a size limit is answered 413
+ * without reading the rest of it,
+ * so bursts of slow or large requests queue for a thread
+ * rather than using up threads and memory.
+ * At most a fixed number of inputs wait to be answered.
+ * A request that would take the total over that
+ * is answered 503, as are requests once the server is closing,
+ * and a request not answered in time is answered 504.
+ * Inputs whose requests have already timed out
+ * are dropped rather than answered.
+ */
+public final class InferenceServer implements Closeable
+{
+    private static final Pattern SEPARATOR = Pattern.compile("[,\\s]+");
+
+    private final Supplier<Network> network;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final int queueCapacity;
+    private final Duration responseTimeout;
+    private final long maxRequestBytes;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final Thread batcher;
+    private final BlockingQueue<Pending> queue;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder inputs = new LongAdder();
+    private final Object enqueueLock = new Object();
+    private volatile boolean closed;    // set under enqueueLock
+
+    /**
+     * Builds an InferenceServer.
+     * By default it listens on an ephemeral loopback port,
+     * with batches of up to 64 inputs waiting up to a millisecond,
+     * at most 4096 inputs waiting in all,
+     * and responses timing out after ten seconds.
+     * Requests are handled on 16 threads,
+     * with bodies of up to a megabyte.
+     */
+    public static final class Builder
+    {
+        private Supplier<Network> network;
+        private InetSocketAddress address =
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        private int maxBatchSize = 64;
+        private Duration maxWait = Duration.ofMillis(1);
+        private int queueCapacity = 4096;
+        private Duration responseTimeout = Duration.ofSeconds(10);
+        private int handlerThreads = 16;
+        private long maxRequestBytes = 1 << 20;
+
+        /**
+         * Specifies the Network to serve.
+         *
+         * @param net   the Network to serve
+         * @return      a reference to this builder
+         */
+        public Builder withNetwork(Network net)
+        {
+            Objects.requireNonNull(net);
+            return withNetwork(()->net);
+        }
+
+        /**
+         * Specifies where to get the Network to serve,
+         * which is asked afresh for each batch,
+         * such as <code>registry::current</code> for a ModelRegistry.
+         *
+         * @param network   supplies the Network to serve
+         * @return          a reference to this builder
+         */
+        public Builder withNetwork(Supplier<Network> network)
+        {
+            this.network = Objects.requireNonNull(network);
+            return this;
+        }
+
+        /**
+         * Specifies the address to listen on.
+         *
+         * @param address   the address to listen on
+         * @return          a reference to this builder
+         */
+        public Builder withAddress(InetSocketAddress address)
+        {
+            this.address = Objects.requireNonNull(address);
+            return this;
+        }
+
+        /**
+         * Specifies the most inputs answered in one forward pass.
+         *
+         * @param size  the maximum batch size, at least 1
+         * @return      a reference to this builder
+         */
+        public Builder withMaxBatchSize(int size)
+        {
+            if(size < 1)
+                throw new IllegalArgumentException(
+                    "size must be >= 1, but was "+size);
+            this.maxBatchSize = size;
+            return this;
+        }
+
+        /**
+         * Specifies the longest an input waits for a batch to fill.
+         *
+         * @param wait  the maximum wait
+         * @return      a reference to this builder
+         */
+        public Builder withMaxWait(Duration wait)
+        {
+            if(wait.isNegative())
+                throw new IllegalArgumentException("wait is negative");
+            this.maxWait = wait;
+            return this;
+        }
+
+        /**
+         * Specifies the most inputs that may wait to be answered.
+         *
+         * @param capacity  the queue capacity, at least 1
+         * @return          a reference to this builder
+         */
+        public Builder withQueueCapacity(int capacity)
+        {
+            if(capacity < 1)
+                throw new IllegalArgumentException(
+                    "capacity must be >= 1, but was "+capacity);
+            this.queueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Specifies the longest a request waits for its answers.
+         *
+         * @param timeout   the response timeout
+         * @return          a reference to this builder
+         */
+        public Builder withResponseTimeout(Duration timeout)
+        {
+            if(timeout.isNegative())
+                throw new IllegalArgumentException("timeout is negative");
+            this.responseTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * Specifies the number of threads handling requests.
+         * Requests beyond that wait for a thread.
+         *
+         * @param threads   the number of handler threads, at least 1
+         * @return          a reference to this builder
+         */
+        public Builder withHandlerThreads(int threads)
+        {
+            if(threads < 1)
+                throw new IllegalArgumentException(
+                    "threads must be >= 1, but was "+threads);
+            this.handlerThreads = threads;
+            return this;
+        }
+
+        /**
+         * Specifies the largest request body accepted.
+         *
+         * @param bytes the maximum body size, at least 1
+         * @return      a reference to this builder
+         */
+        public Builder withMaxRequestBytes(long bytes)
+        {
+            if(bytes < 1)
+                throw new IllegalArgumentException(
+                    "bytes must be >= 1, but was "+bytes);
+            this.maxRequestBytes = bytes;
+            return this;
+        }
+
+        /**
+         * Builds the specified InferenceServer and starts it.
+         *
+         * @return              the started InferenceServer
+         * @throws IOException  if the address can not be bound
+         */
+        public InferenceServer build() throws IOException
+        {
+            if(network == null)
+                throw new IllegalStateException("no network specified");
+            return new InferenceServer(this);
+        }
+    }
+
+    private InferenceServer(Builder builder) throws IOException
+    {
+        network = builder.network;
+        maxBatchSize = builder.maxBatchSize;
+        maxWaitNanos = builder.maxWait.toNanos();
+        queueCapacity = builder.queueCapacity;
+        responseTimeout = builder.responseTimeout;
+        maxRequestBytes = builder.maxRequestBytes;
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+
+        handlers = Executors.newFixedThreadPool(builder.handlerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "inference-handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(builder.address, 0);
+        server.createContext("/predict", this::predict);
+        server.setExecutor(handlers);
+
+        batcher = new Thread(this::batch, "inference-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+        server.start();
+    }
+
+    /**
+     * Returns the address the server is listening on.
+     *
+     * @return  the bound address
+     */
+    public InetSocketAddress address()
+    {
+        return server.getAddress();
+    }
+
+    /**
+     * Returns the number of batched forward passes run.
+     *
+     * @return  the number of batches
+     */
+    public long batches()
+    {
+        return batches.sum();
+    }
+
+    /**
+     * Returns the number of inputs answered.
+     *
+     * @return  the number of inputs
+     */
+    public long inputs()
+    {
+        return inputs.sum();
+    }
+
+    /**
+     * Stops the server, letting requests in progress finish.
+     */
+    @Override
+    public void close()
+    {
+        synchronized(enqueueLock)
+        {
+            closed = true;
+        }
+        server.stop(1);
+        batcher.interrupt();
+        handlers.shutdown();
+    }
+
+    private void predict(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            if(!"POST".equals(exchange.getRequestMethod()))
+            {
+                respond(exchange, 405, "POST inputs, one per line\n");
+                return;
+            }
+
+            final String length =
+                exchange.getRequestHeaders().getFirst("Content-Length");
+            if(length != null && tooLarge(length))
+            {
+                respond(exchange, 413, "request body is too large\n");
+                return;
+            }
+
+            final int width = network.get().structure()[0];
+            final long deadline = System.nanoTime() + responseTimeout.toNanos();
+            List<Pending> pending = new ArrayList<>();
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new Limited(exchange.getRequestBody(), maxRequestBytes),
+                    UTF_8)))
+            {
+                String line;
+                while((line = reader.readLine()) != null)
+                {
+                    line = line.strip();
+                    if(line.isEmpty()) continue;
+                    double[] input = parse(line);
+                    if(input.length != width)
+                    {
+                        respond(exchange, 400,
+                            "input length ["+input.length+"] != "+
+                            "input layer size ["+width+"]\n");
+                        return;
+                    }
+                    pending.add(new Pending(input, deadline));
+                    if(pending.size() > queueCapacity)
+                    {
+                        respond(exchange, 503, "too many inputs\n");
+                        return;
+                    }
+                }
+            }
+            catch(NumberFormatException e)
+            {
+                respond(exchange, 400, e.getMessage()+"\n");
+                return;
+            }
+            catch(TooLargeException e)
+            {
+                respond(exchange, 413, "request body is too large\n");
+                return;
+            }
+
+            // Only the batcher takes from the queue,
+            // so room checked under the lock is still there to offer into.
+            synchronized(enqueueLock)
+            {
+                if(closed)
+                {
+                    respond(exchange, 503, "shutting down\n");
+                    return;
+                }
+                if(queue.remainingCapacity() < pending.size())
+                {
+                    respond(exchange, 503, "too many inputs waiting\n");
+                    return;
+                }
+                queue.addAll(pending);
+            }
+
+            StringBuilder body = new StringBuilder();
+            for(Pending p : pending)
+            {
+                double[] output;
+                try
+                {
+                    output = p.result.get(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+                catch(TimeoutException e)
+                {
+                    // so the batcher skips the rest
+                    for(Pending unanswered : pending) unanswered.result.cancel(false);
+                    throw e;
+                }
+                for(int i=0; i<output.length; i++)
+                {
+                    if(i > 0) body.append(',');
+                    body.append(output[i]);
+                }
+                body.append('\n');
+            }
+            respond(exchange, 200, body.toString());
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "shutting down\n");
+        }
+        catch(TimeoutException e)
+        {
+            respond(exchange, 504, "inference timed out\n");
+        }
+        catch(ExecutionException | RuntimeException e)
+        {
+            respond(exchange, 500, "inference failed\n");
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    private boolean tooLarge(String contentLength)
+    {
+        try
+        {
+            return Long.parseLong(contentLength.strip()) > maxRequestBytes;
+        }
+        catch(NumberFormatException e)
+        {
+            return false; // the body's actual size is still limited
+        }
+    }
+
+    private static double[] parse(String line)
+    {
+        String[] fields = SEPARATOR.split(line);
+        double[] values = new double[fields.length];
+        for(int i=0; i<fields.length; i++)
+        {
+            values[i] = Double.parseDouble(fields[i]);
+        }
+        return values;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body)
+    throws IOException
+    {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try(OutputStream out = exchange.getResponseBody())
+        {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Gathers queued inputs into batches and answers them.
+     */
+    private void batch()
+    {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        int lastBatchSize = 0;
+        while(!closed)
+        {
+            try
+            {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - batch.size());
+
+                if(lastBatchSize > 1)
+                {
+                    final long deadline = System.nanoTime() + maxWaitNanos;
+                    long remaining;
+                    while(batch.size() < maxBatchSize &&
+                          (remaining = deadline - System.nanoTime()) > 0)
+                    {
+                        Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if(next == null) break;
+                        batch.add(next);
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                    }
+                }
+            }
+            catch(InterruptedException e)
+            {
+                // closing; answer what was gathered
+            }
+
+            if(!batch.isEmpty())
+            {
+                run(batch);
+                lastBatchSize = batch.size();
+                batch.clear();
+            }
+        }
+
+        List<Pending> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        for(Pending p : abandoned)
+        {
+            p.result.completeExceptionally(
+                new IllegalStateException("server closed"));
+        }
+    }
+
+    private void run(List<Pending> gathered)
+    {
+        // Drop inputs whose requests have already given up on them.
+        final long now = System.nanoTime();
+        List<Pending> batch = new ArrayList<>(gathered.size());
+        for(Pending p : gathered)
+        {
+            if(p.result.isDone()) continue;
+            if(now - p.deadline >= 0)
+            {
+                p.result.completeExceptionally(
+                    new TimeoutException("expired before its batch"));
+                continue;
+            }
+            batch.add(p);
+        }
+        if(batch.isEmpty()) return;
+
+        double[][] in = new double[batch.size()][];
+        for(int b=0; b<in.length; b++) in[b] = batch.get(b).input;
+        try
+        {
+            double[][] out = network.get().answer(in);
+            for(int b=0; b<out.length; b++) batch.get(b).result.complete(out[b]);
+            batches.increment();
+            inputs.add(in.length);
+        }
+        catch(RuntimeException e)
+        {
+            for(Pending p : batch) p.result.completeExceptionally(e);
+        }
+    }
+
+    private static final class Pending
+    {
+        final double[] input;
+        final long deadline;    // System.nanoTime() after which no one waits
+        final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        Pending(double[] input, long deadline)
+        {
+            this.input = input;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Thrown when a request body goes over the size limit.
+     */
+    @SuppressWarnings("serial")
+    private static final class TooLargeException extends IOException
+    {
+        TooLargeException()
+        {
+            super("request body is too large");
+        }
+    }
+
+    /**
+     * Passes through at most a limited number of bytes,
+     * failing rather than reading past them.
+     */
+    private static final class Limited extends FilterInputStream
+    {
+        private long remaining;
+
+        Limited(InputStream in, long limit)
+        {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            final int b = super.read();
+            if(b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException
+        {
+            final int n = super.read(bytes, offset, length);
+            if(n > 0) count(n);
+            return n;
+        }
+
+        private void count(int n) throws TooLargeException
+        {
+            remaining -= n;
+            if(remaining < 0) throw new TooLargeException();
+        }
+    }
+}
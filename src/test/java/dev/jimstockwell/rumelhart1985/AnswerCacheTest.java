@@ -0,0 +1,68 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AnswerCacheTest
+{
+    private final Network net =
+        new Network.Builder().withStructure(new int[] {2,5,1})
+                             .build()
+                             .learn(Patterns.xor(), 10);
+
+    @Test
+    public void repeatedInputsHit()
+    {
+        AnswerCache cache = new AnswerCache.Builder().withNetwork(net).build();
+
+        double[] first = cache.answer(new double[] {0,1});
+        first[0] = 42;                                  // caller's own copy
+        double[] second = cache.answer(new double[] {0,1});
+
+        assertArrayEquals(net.answer(new double[] {0,1}), second);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void leastRecentlyUsedAreDropped()
+    {
+        AnswerCache cache = new AnswerCache.Builder()
+            .withNetwork(net)
+            .withCapacity(2)
+            .build();
+
+        cache.answer(new double[] {0,0});
+        cache.answer(new double[] {0,1});
+        cache.answer(new double[] {0,0});
+        cache.answer(new double[] {1,1});   // drops {0,1}
+        cache.answer(new double[] {0,0});
+        cache.answer(new double[] {0,1});
+
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.hits());
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    public void aNewNetworkDropsEveryAnswer()
+    {
+        AtomicReference<Network> live = new AtomicReference<>(net);
+        AnswerCache cache = new AnswerCache.Builder()
+            .withNetwork(live::get)
+            .build();
+        cache.answer(new double[] {0,1});
+
+        Network next = net.learn(Patterns.xor(), 1);
+        live.set(next);
+
+        assertArrayEquals(next.answer(new double[] {0,1}),
+                          cache.answer(new double[] {0,1}));
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.size());
+    }
+}
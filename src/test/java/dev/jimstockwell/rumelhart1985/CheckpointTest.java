@@ -0,0 +1,251 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class CheckpointTest
+{
+    @TempDir
+    Path directory;
+
+    private Network trainedXor()
+    {
+        return new Network.Builder().withStructure(new int[] {2,5,1})
+                                    .withEta(.25)
+                                    .build()
+                                    .learn(Patterns.xor(), 10);
+    }
+
+    @Test
+    public void roundTripGivesAnEqualNetwork() throws IOException
+    {
+        Path file = directory.resolve("xor.net");
+        Network net = trainedXor();
+
+        Checkpoint.write(net, file);
+        Network read = Checkpoint.read(file);
+
+        assertEquals(net, read);
+        assertEquals(.25, read.eta());
+        assertArrayEquals(
+            net.answer(new double[] {0,1}),
+            read.answer(new double[] {0,1}));
+    }
+
+    @Test
+    public void roundTripKeepsNormalizationAndOddStructures() throws IOException
+    {
+        Path file = directory.resolve("odd.net");
+        Network net = new Network.Builder()
+            .withStructure(new int[] {2,3,4})
+            .withNormalization(
+                Normalization.of(new double[] {1,2}, new double[] {3,4}))
+            .build();
+
+        Checkpoint.write(net, file);
+
+        assertEquals(net, Checkpoint.read(file));
+    }
+
+    @Test
+    public void roundTripOfAnEmptyNetwork() throws IOException
+    {
+        Path file = directory.resolve("empty.net");
+        Network net = new Network.Builder().build();
+
+        Checkpoint.write(net, file);
+
+        assertEquals(net, Checkpoint.read(file));
+    }
+
+    @Test
+    public void largeLayersStreamThroughTheBuffer() throws IOException
+    {
+        Path file = directory.resolve("large.net");
+        Network net = new Network.Builder().withStructure(new int[] {3000,9,2})
+                                           .build();
+
+        Checkpoint.write(net, file);
+
+        assertEquals(net, Checkpoint.read(file));
+    }
+
+    @Test
+    public void corruptionIsDetected() throws IOException
+    {
+        Path file = directory.resolve("corrupt.net");
+        Checkpoint.write(trainedXor(), file);
+        byte[] good = Files.readAllBytes(file);
+
+        byte[] flipped = good.clone();
+        flipped[good.length/2] ^= 1;
+        Files.write(file, flipped);
+        assertThrows(Checkpoint.FormatException.class, () -> Checkpoint.read(file));
+
+        Files.write(file, Arrays.copyOf(good, good.length-3));
+        assertThrows(Checkpoint.FormatException.class, () -> Checkpoint.read(file));
+
+        byte[] badMagic = good.clone();
+        badMagic[0] = 'X';
+        Files.write(file, badMagic);
+        assertThrows(Checkpoint.FormatException.class, () -> Checkpoint.read(file));
+    }
+
+    @Test
+    public void aCorruptStructureIsCaughtBeforeAllocating() throws IOException
+    {
+        Path file = directory.resolve("huge.net");
+        Checkpoint.write(trainedXor(), file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes)
+                  .order(ByteOrder.LITTLE_ENDIAN)
+                  .putInt(28, 1 << 30)      // structure {2, 1<<30, 1<<30}
+                  .putInt(32, 1 << 30);
+        Files.write(file, bytes);
+
+        assertThrows(Checkpoint.FormatException.class, () -> Checkpoint.read(file));
+    }
+
+    @Test
+    public void aCorruptStructureIsCaughtOnAStream() throws IOException
+    {
+        Path file = directory.resolve("huge.net");
+        Checkpoint.write(trainedXor(), file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes)
+                  .order(ByteOrder.LITTLE_ENDIAN)
+                  .putInt(28, 1 << 30)      // structure {2, 1<<30, 1<<30}
+                  .putInt(32, 1 << 30);
+        assertThrows(Checkpoint.FormatException.class, () -> Checkpoint.read(
+            Channels.newChannel(new ByteArrayInputStream(bytes))));
+
+        ByteBuffer.wrap(bytes)
+                  .order(ByteOrder.LITTLE_ENDIAN)
+                  .putInt(24, 0);           // structure {0, 1<<30, 1<<30}
+        assertThrows(Checkpoint.FormatException.class, () -> Checkpoint.read(
+            Channels.newChannel(new ByteArrayInputStream(bytes))));
+    }
+
+    @Test
+    public void aBadNormalizationIsAFormatProblem() throws IOException
+    {
+        Path file = directory.resolve("normalized.net");
+        Checkpoint.write(
+            new Network.Builder()
+                .withStructure(new int[] {2,5,3})
+                .withNormalization(
+                    Normalization.of(new double[] {1,2}, new double[] {3,4}))
+                .build(),
+            file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes)
+                  .order(ByteOrder.LITTLE_ENDIAN)
+                  .putDouble(48, Double.NaN);   // the first offset
+        Files.write(file, bytes);
+
+        assertThrows(Checkpoint.FormatException.class, () -> Checkpoint.read(file));
+        assertThrows(Checkpoint.FormatException.class, () -> Checkpoint.map(file));
+    }
+
+    @Test
+    public void writtenFilesGetDefaultPermissions() throws IOException
+    {
+        Path plain = directory.resolve("plain");
+        Files.write(plain, new byte[0]);
+        Path file = directory.resolve("shared.net");
+
+        Checkpoint.write(trainedXor(), file);
+
+        if(Files.getFileStore(file).supportsFileAttributeView("posix"))
+        {
+            assertEquals(Files.getPosixFilePermissions(plain),
+                         Files.getPosixFilePermissions(file));
+        }
+    }
+
+    @Test
+    public void mappedNetworkAnswersLikeTheOriginal() throws IOException
+    {
+        Path file = directory.resolve("mapped.net");
+        Network net = new Network.Builder()
+            .withStructure(new int[] {2,5,3})
+            .withNormalization(
+                Normalization.of(new double[] {1,2}, new double[] {3,4}))
+            .build();
+        Checkpoint.write(net, file);
+
+        Network mapped = Checkpoint.map(file);
+
+        assertArrayEquals(net.structure(), mapped.structure());
+        assertArrayEquals(net.theta(), mapped.theta());
+        assertEquals(net.getNormalization(), mapped.getNormalization());
+        for(double[] input : new double[][] {{0,0},{0,1},{5,-2}})
+        {
+            assertArrayEquals(net.answer(input), mapped.answer(input));
+        }
+        for(int out=0; out<5; out++)
+        {
+            for(int in=0; in<2; in++)
+            {
+                assertEquals(
+                    net.getW().getWeight(0,out,in),
+                    mapped.getW().getWeight(0,out,in));
+            }
+        }
+    }
+
+    @Test
+    public void mappedNetworkEqualsTheReadNetwork() throws IOException
+    {
+        Path file = directory.resolve("equal.net");
+        Checkpoint.write(trainedXor(), file);
+
+        Network read = Checkpoint.read(file);
+        Network mapped = Checkpoint.map(file);
+
+        assertEquals(read, mapped);
+        assertEquals(mapped, read);
+        assertEquals(read.hashCode(), mapped.hashCode());
+        assertNotEquals(mapped, read.learn(Patterns.xor(), 1));
+    }
+
+    @Test
+    public void mappedNetworkLearnsIntoHeapWeights() throws IOException
+    {
+        Path file = directory.resolve("learn.net");
+        Network net = new Network.Builder().withStructure(new int[] {1,2,1})
+                                           .build();
+        Checkpoint.write(net, file);
+
+        Network mapped = Checkpoint.map(file);
+        Network learned = mapped.learn(Patterns.flip(), 3);
+
+        assertEquals(net.learn(Patterns.flip(), 3), learned);
+        assertEquals(net.loss(Patterns.flip()), mapped.loss(Patterns.flip()));
+    }
+
+    @Test
+    public void mappingChecksTheFileSize() throws IOException
+    {
+        Path file = directory.resolve("short.net");
+        Checkpoint.write(trainedXor(), file);
+        byte[] good = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(good, good.length-8));
+
+        assertThrows(Checkpoint.FormatException.class, () -> Checkpoint.map(file));
+    }
+}
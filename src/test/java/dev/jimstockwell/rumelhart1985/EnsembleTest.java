@@ -0,0 +1,72 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class EnsembleTest
+{
+    private static List<Network> members(int count, int... structure)
+    {
+        List<Network> nets = new ArrayList<>();
+        for(int i=0; i<count; i++)
+        {
+            nets.add(new Network.Builder().withStructure(structure)
+                                          .build()
+                                          .learn(Patterns.xor(), i));
+        }
+        return nets;
+    }
+
+    @Test
+    public void membersAnswerAsThemselves()
+    {
+        List<Network> nets = members(5, 2,5,3,1);
+        Ensemble ensemble = Ensemble.of(nets);
+
+        for(double[] input : new double[][] {{0,0},{0,1},{1,0},{1,1}})
+        {
+            Ensemble.Answer answer = ensemble.answer(input);
+            double[] mean = new double[1];
+            for(int m=0; m<nets.size(); m++)
+            {
+                double[] expected = nets.get(m).answer(input);
+                assertArrayEquals(expected, answer.member(m), 1e-12);
+                assertArrayEquals(expected, answer.members()[m], 1e-12);
+                mean[0] += expected[0] / nets.size();
+            }
+            assertArrayEquals(mean, answer.mean(), 1e-12);
+        }
+    }
+
+    @Test
+    public void twoLayerMembersUseOnlyTheStackedLayer()
+    {
+        List<Network> nets = members(3, 2,1);
+        Ensemble ensemble = Ensemble.of(nets);
+
+        assertEquals(3, ensemble.size());
+        assertArrayEquals(nets.get(2).answer(new double[] {1,0}),
+                          ensemble.answer(new double[] {1,0}).member(2),
+                          1e-12);
+    }
+
+    @Test
+    public void membersMustMatch()
+    {
+        List<Network> nets = members(2, 2,5,1);
+        nets.add(new Network.Builder().withStructure(new int[] {2,4,1}).build());
+
+        assertThrows(IllegalArgumentException.class, ()->Ensemble.of(nets));
+        assertThrows(IllegalArgumentException.class,
+                     ()->Ensemble.of(Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class,
+                     ()->Ensemble.of(members(2, 2,5,1)).answer(new double[3]));
+    }
+}
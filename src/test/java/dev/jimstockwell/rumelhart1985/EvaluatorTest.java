@@ -0,0 +1,77 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class EvaluatorTest
+{
+    private static Patterns random(int count)
+    {
+        Random random = new Random(7);
+        double[][][] pats = new double[count][][];
+        for(int p=0; p<count; p++)
+        {
+            pats[p] = new double[][] {
+                {random.nextDouble(), random.nextDouble()},
+                {random.nextInt(2)}};
+        }
+        return new Patterns(pats);
+    }
+
+    @Test
+    public void lossMatchesTheNetworksAndIsDeterministic()
+    {
+        Network net = new Network.Builder().withStructure(new int[] {2,5,1})
+                                           .build();
+        Patterns pats = random(10_000);
+        Evaluator evaluator = new Evaluator.Builder().withBatchSize(64).build();
+
+        Evaluator.Evaluation first = evaluator.evaluate(net, pats);
+        Evaluator.Evaluation second = evaluator.evaluate(net, pats);
+
+        assertEquals(net.loss(pats), first.loss(), 1e-6);
+        assertEquals(first.loss(), second.loss());
+        assertEquals(first.accuracy(), second.accuracy());
+        assertEquals(first.maxError(), second.maxError());
+    }
+
+    @Test
+    public void accuracyAndMaxErrorCountMultiplicities()
+    {
+        Network net = new Network.Builder()
+            .withStructure(new int[] {1,1})
+            .withW(new EdgeWeights(new double[][][] {{{0}}}))
+            .withTheta(new double[][] {{0}})
+            .build();                       // always answers .5
+        Patterns pats = new Patterns(new double[][][] {
+            {{0},{.55}}, {{1},{.55}}, {{1},{.55}}, {{2},{1}}}).deduplicated();
+
+        Evaluator.Evaluation result =
+            new Evaluator.Builder().withBatchSize(1).build().evaluate(net, pats);
+
+        assertEquals(.75, result.accuracy(), 1e-12);
+        assertEquals(.5, result.maxError(), 1e-12);
+        assertEquals(net.loss(pats), result.loss(), 1e-12);
+    }
+
+    @Test
+    public void allWithinToleranceAgreesWithAccuracy()
+    {
+        Network trained = new Network.Builder().withStructure(new int[] {2,5,1})
+                                               .withEta(.5)
+                                               .build()
+                                               .learn(Patterns.xor());
+        Network untrained = new Network.Builder().withStructure(new int[] {2,5,1})
+                                                 .build();
+        Evaluator evaluator = new Evaluator.Builder().withBatchSize(1).build();
+
+        assertTrue(evaluator.allWithinTolerance(trained, Patterns.xor()));
+        assertFalse(evaluator.allWithinTolerance(untrained, Patterns.xor()));
+        assertEquals(1, evaluator.evaluate(trained, Patterns.xor()).accuracy());
+    }
+}
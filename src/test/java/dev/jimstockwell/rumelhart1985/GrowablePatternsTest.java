@@ -0,0 +1,88 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class GrowablePatternsTest
+{
+    @Test
+    public void snapshotHoldsWhatWasAppended()
+    {
+        var growable = new GrowablePatterns(2, 1, 3); // small chunks
+        growable.appendAll(Patterns.xor());
+        growable.appendAll(Patterns.xor());
+
+        var doubleXor = new Patterns(new double[][][] {
+            {{0,0},{0}}, {{0,1},{1}}, {{1,0},{1}}, {{1,1},{0}},
+            {{0,0},{0}}, {{0,1},{1}}, {{1,0},{1}}, {{1,1},{0}}
+        });
+        assertEquals(8, growable.size());
+        assertEquals(doubleXor, growable.snapshot());
+    }
+
+    @Test
+    public void snapshotIsNotChangedByLaterAppends()
+    {
+        var growable = new GrowablePatterns(1, 1, 2);
+        growable.append(new double[] {0}, new double[] {1});
+
+        Patterns before = growable.snapshot();
+        growable.append(new double[] {1}, new double[] {0});
+        growable.append(new double[] {1}, new double[] {0});
+
+        assertEquals(Patterns.flip().onePattern(0), before);
+        assertEquals(3, growable.snapshot().size());
+    }
+
+    @Test
+    public void appendedArraysAreCopiedAndChecked()
+    {
+        var growable = new GrowablePatterns(1, 1);
+        double[] input = {0};
+        growable.append(input, new double[] {1});
+        input[0] = 0.5;
+
+        assertEquals(0.0, growable.snapshot().getInputPattern(0)[0]);
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> growable.append(new double[] {0,1}, new double[] {1}));
+    }
+
+    @Test
+    public void emptySnapshotIsEmpty()
+    {
+        assertEquals(0, new GrowablePatterns(3, 2).snapshot().size());
+    }
+
+    @Test
+    public void snapshotsSurviveTheFirstChunkGrowing()
+    {
+        var growable = new GrowablePatterns(1, 1, 100);
+        growable.append(new double[] {0}, new double[] {0});
+        Patterns early = growable.snapshot();
+        for(int i=1; i<250; i++)
+        {
+            growable.append(new double[] {i}, new double[] {-i});
+        }
+
+        assertEquals(1, early.size());
+        assertEquals(0.0, early.getInputPattern(0)[0]);
+        Patterns all = growable.snapshot();
+        assertEquals(250, all.size());
+        for(int i=0; i<250; i++)
+        {
+            assertEquals(i, all.getInputPattern(i)[0]);
+            assertEquals(-i, all.getOutputPattern(i)[0]);
+        }
+    }
+
+    @Test
+    public void chunksTooLargeForAnArrayAreRejected()
+    {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new GrowablePatterns(Integer.MAX_VALUE/2, 1, 4));
+    }
+}
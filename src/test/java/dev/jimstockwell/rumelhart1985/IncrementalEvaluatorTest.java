@@ -0,0 +1,78 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class IncrementalEvaluatorTest
+{
+    @Test
+    public void updatesAnswerLikeFreshForwardPasses()
+    {
+        double[] offsets = new double[50];
+        double[] scales = new double[50];
+        Arrays.fill(offsets, .5);
+        Arrays.fill(scales, 2);
+        Network net = new Network.Builder()
+            .withStructure(new int[] {50,8,3})
+            .withNormalization(Normalization.of(offsets, scales))
+            .build();
+        double[] input = new double[50];
+        IncrementalEvaluator evaluator = IncrementalEvaluator.of(net, input);
+        assertArrayEquals(net.answer(input), evaluator.answer(), 1e-12);
+
+        Random random = new Random(3);
+        for(int step=0; step<100; step++)
+        {
+            int index = random.nextInt(50);
+            double value = random.nextDouble();
+            input[index] = value;
+            evaluator.set(index, value);
+            assertArrayEquals(net.answer(input), evaluator.answer(), 1e-9);
+        }
+
+        evaluator.set(new int[] {0,49}, new double[] {1,-1});
+        input[0] = 1;
+        input[49] = -1;
+        assertArrayEquals(input, evaluator.input());
+        assertArrayEquals(net.answer(input), evaluator.answer(), 1e-9);
+    }
+
+    @Test
+    public void twoLayerNetworksAnswerFromTheFirstLayer()
+    {
+        Network net = new Network.Builder().withStructure(new int[] {2,1}).build();
+        IncrementalEvaluator evaluator =
+            IncrementalEvaluator.of(net, new double[] {0,0});
+
+        evaluator.set(1, 1);
+
+        assertArrayEquals(net.answer(new double[] {0,1}), evaluator.answer(), 1e-12);
+    }
+
+    @Test
+    public void manyUpdatesStayAccurate()
+    {
+        Network net = new Network.Builder().withStructure(new int[] {4,3,1}).build();
+        double[] input = new double[4];
+        IncrementalEvaluator evaluator = IncrementalEvaluator.of(net, input);
+
+        Random random = new Random(5);
+        for(int step=0; step<3*IncrementalEvaluator.REFRESH_INTERVAL; step++)
+        {
+            int index = random.nextInt(4);
+            input[index] = random.nextGaussian() * 1e6;
+            evaluator.set(index, input[index]);
+        }
+        input[0] = input[1] = input[2] = input[3] = .25;
+        evaluator.set(new int[] {0,1,2,3}, new double[] {.25,.25,.25,.25});
+
+        assertArrayEquals(net.answer(input), evaluator.answer(), 1e-6);
+        assertThrows(IllegalArgumentException.class,
+                     ()->evaluator.reset(new double[3]));
+    }
+}
@@ -0,0 +1,51 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class InferencePlanTest
+{
+    @Test
+    public void answersLikeTheNetwork()
+    {
+        Network net = new Network.Builder()
+            .withStructure(new int[] {7,5,3,2})
+            .withNormalization(Normalization.of(
+                new double[] {0,1,2,3,4,5,6},
+                new double[] {1,2,1,2,1,2,1}))
+            .build();
+        InferencePlan plan = InferencePlan.of(net);
+
+        Random random = new Random(1);
+        double[][] inputs = new double[20][7];
+        for(double[] input : inputs) Arrays.setAll(input, i->random.nextGaussian());
+
+        double[][] batched = plan.answer(inputs);
+        for(int b=0; b<inputs.length; b++)
+        {
+            assertArrayEquals(net.answer(inputs[b]), plan.answer(inputs[b]), 1e-12);
+            assertArrayEquals(net.answer(inputs[b]), batched[b], 1e-12);
+        }
+    }
+
+    @Test
+    public void answersXorLikeTheNetwork()
+    {
+        Network net = new Network.Builder().withStructure(new int[] {2,5,1})
+                                           .build()
+                                           .learn(Patterns.xor(), 10);
+        InferencePlan plan = InferencePlan.of(net);
+
+        for(double[] input : new double[][] {{0,0},{0,1},{1,0},{1,1}})
+        {
+            assertArrayEquals(net.answer(input), plan.answer(input), 1e-12);
+        }
+        assertThrows(IllegalArgumentException.class,
+                     ()->plan.answer(new double[] {1}));
+    }
+}
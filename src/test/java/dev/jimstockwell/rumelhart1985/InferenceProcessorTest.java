@@ -0,0 +1,139 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InferenceProcessorTest
+{
+    private final Network net =
+        new Network.Builder().withStructure(new int[] {2,5,1})
+                             .build()
+                             .learn(Patterns.xor(), 10);
+
+    /**
+     * Collects everything, requesting a fixed amount up front.
+     */
+    private static final class Collector implements Flow.Subscriber<double[]>
+    {
+        final long initialRequest;
+        final List<double[]> received = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Collector(long initialRequest)
+        {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override public void onSubscribe(Flow.Subscription s) { s.request(initialRequest); }
+        @Override public void onNext(double[] item) { received.add(item); }
+        @Override public void onError(Throwable t) { done.completeExceptionally(t); }
+        @Override public void onComplete() { done.complete(null); }
+    }
+
+    /**
+     * Endlessly publishes the same input, counting what is requested.
+     */
+    private static final class Endless implements Flow.Publisher<double[]>
+    {
+        final AtomicLong requested = new AtomicLong();
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super double[]> subscriber)
+        {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n)
+                {
+                    requested.addAndGet(n);
+                    for(long i=0; i<n; i++) subscriber.onNext(new double[] {0,1});
+                }
+                @Override public void cancel() {}
+            });
+        }
+    }
+
+    @Test
+    public void answersEveryInputInOrder() throws Exception
+    {
+        InferenceProcessor processor = new InferenceProcessor.Builder()
+            .withNetwork(net)
+            .withBufferSize(16)
+            .withMaxBatchSize(4)
+            .build();
+        Collector collector = new Collector(Long.MAX_VALUE);
+        processor.subscribe(collector);
+
+        double[][] inputs = new double[100][];
+        try(SubmissionPublisher<double[]> publisher = new SubmissionPublisher<>())
+        {
+            publisher.subscribe(processor);
+            for(int i=0; i<inputs.length; i++)
+            {
+                inputs[i] = new double[] {i%2, i/2%2};
+                publisher.submit(inputs[i]);
+            }
+        }
+        collector.done.get(30, TimeUnit.SECONDS);
+
+        assertEquals(inputs.length, collector.received.size());
+        for(int i=0; i<inputs.length; i++)
+        {
+            assertArrayEquals(net.answer(inputs[i]),
+                              collector.received.get(i), 1e-12);
+        }
+    }
+
+    @Test
+    public void upstreamIsBoundedByDownstreamDemand() throws Exception
+    {
+        InferenceProcessor processor = new InferenceProcessor.Builder()
+            .withNetwork(net)
+            .withBufferSize(8)
+            .build();
+        Collector collector = new Collector(5);
+        processor.subscribe(collector);
+        Endless upstream = new Endless();
+        upstream.subscribe(processor);
+
+        final long deadline = System.nanoTime() + 30_000_000_000L;
+        while(collector.received.size() < 5 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+
+        assertEquals(5, collector.received.size());
+        assertTrue(upstream.requested.get() <= 5 + 8);
+    }
+
+    @Test
+    public void badInputsAreReportedDownstream() throws Exception
+    {
+        InferenceProcessor processor = new InferenceProcessor.Builder()
+            .withNetwork(net)
+            .build();
+        Collector collector = new Collector(Long.MAX_VALUE);
+        processor.subscribe(collector);
+
+        try(SubmissionPublisher<double[]> publisher = new SubmissionPublisher<>())
+        {
+            publisher.subscribe(processor);
+            publisher.submit(new double[] {1,2,3});
+        }
+
+        CompletableFuture<Void> done = collector.done;
+        Throwable cause = done.handle((v, t) -> t).get(30, TimeUnit.SECONDS);
+        assertTrue(cause instanceof IllegalArgumentException);
+    }
+}
@@ -0,0 +1,120 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class MainTest
+{
+    @TempDir
+    Path directory;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int run(String input, String... args)
+    {
+        return Main.run(
+            args,
+            new ByteArrayInputStream(input.getBytes(UTF_8)),
+            out,
+            new PrintStream(err, true, UTF_8));
+    }
+
+    @Test
+    public void trainThenPredict() throws IOException
+    {
+        Path patterns = directory.resolve("xor.txt");
+        Files.write(patterns, Arrays.asList(
+            "# xor",
+            "0,0 ; 0",
+            "0,1 ; 1",
+            "1 0 ; 1",
+            "1,1 ; 0"));
+        Path checkpoint = directory.resolve("xor.net");
+
+        assertEquals(0, run("", "train", patterns.toString(), checkpoint.toString(),
+                               "--structure", "2,5,1", "--epochs", "20"));
+        Network net = Checkpoint.read(checkpoint);
+        assertEquals(20, Checkpoint.epochs(checkpoint));
+
+        out.reset();
+        assertEquals(0, run("0,1\n\n1,1\n", "predict", checkpoint.toString(),
+                               "--batch", "1"));
+        String[] lines = new String(out.toByteArray(), UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertArrayEquals(net.answer(new double[] {0,1}),
+                          new double[] {Double.parseDouble(lines[0])}, 1e-12);
+        assertArrayEquals(net.answer(new double[] {1,1}),
+                          new double[] {Double.parseDouble(lines[1])}, 1e-12);
+    }
+
+    @Test
+    public void benchNeedsOnlyAStructure()
+    {
+        assertEquals(0, run("", "bench", "--structure", "4,3,2", "--rows", "100"));
+        assertTrue(new String(out.toByteArray(), UTF_8).contains("rows/s"));
+    }
+
+    @Test
+    public void badUsageExitsWithTwo()
+    {
+        assertEquals(2, run(""));
+        assertEquals(2, run("", "fly"));
+        assertEquals(2, run("", "bench"));
+        assertEquals(2, run("", "bench", "--structure", "2,x"));
+    }
+
+    @Test
+    public void unknownOptionsAreBadUsage()
+    {
+        assertEquals(2, run("", "bench", "--structure", "4,3,2", "--row", "100"));
+        assertTrue(new String(err.toByteArray(), UTF_8).contains("--row"));
+        assertEquals(2, run("", "train", "p.txt", "c.net",
+                               "--structure", "2,5,1", "--epoch", "5"));
+        assertEquals(2, run("", "bench", "--structure", "4,3,2", "--mapped"));
+    }
+
+    @Test
+    public void badDataExitsWithThree() throws IOException
+    {
+        Path patterns = directory.resolve("xor.txt");
+        Files.write(patterns, Arrays.asList("0,0 ; 0", "0,1 ; 1"));
+        Path checkpoint = directory.resolve("xor.net");
+
+        assertEquals(3, run("", "train", patterns.toString(), checkpoint.toString(),
+                               "--structure", "3,5,1", "--epochs", "1"));
+        assertTrue(new String(err.toByteArray(), UTF_8).contains("2 inputs"));
+
+        Files.write(patterns, Arrays.asList("0,0 ; 0", "0,1,1 ; 1"));
+        assertEquals(3, run("", "train", patterns.toString(), checkpoint.toString(),
+                               "--structure", "2,5,1", "--epochs", "1"));
+
+        Files.write(patterns, Arrays.asList("0,0 ; 0", "0,1 ; 1"));
+        assertEquals(0, run("", "train", patterns.toString(), checkpoint.toString(),
+                               "--structure", "2,5,1", "--epochs", "1"));
+        err.reset();
+        assertEquals(3, run("0,1\n0,1,1\n", "predict", checkpoint.toString()));
+        assertTrue(new String(err.toByteArray(), UTF_8).contains("line 2"));
+        assertEquals(3, run("zero,one\n", "predict", checkpoint.toString()));
+    }
+
+    @Test
+    public void missingCheckpointExitsWithOne()
+    {
+        assertEquals(1, run("", "predict",
+                               directory.resolve("none.net").toString()));
+    }
+}
@@ -0,0 +1,171 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ModelCacheTest
+{
+    @TempDir
+    Path directory;
+
+    private static final int[] STRUCTURE = {2,5,1};
+
+    private static Network small()
+    {
+        return new Network.Builder().withStructure(STRUCTURE).build();
+    }
+
+    @Test
+    public void footprintCountsWeightsThetasAndArrays()
+    {
+        assertEquals(
+            16 + 5*8 + 5*(16 + 2*8) + 16 + 5*8 +
+            16 + 1*8 + 1*(16 + 5*8) + 16 + 1*8,
+            ModelCache.footprint(STRUCTURE));
+    }
+
+    @Test
+    public void loadsFromCheckpointsAndHitsAfterwards() throws IOException
+    {
+        Network net = small().learn(Patterns.xor(), 1);
+        Checkpoint.write(net, directory.resolve("customer-1.net"));
+        ModelCache cache = new ModelCache.Builder()
+            .withCheckpointDirectory(directory)
+            .withByteBudget(1 << 20)
+            .build();
+
+        Network first = cache.get("customer-1");
+        Network second = cache.get("customer-1");
+
+        assertEquals(net, first);
+        assertSame(first, second);
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+        assertEquals(ModelCache.footprint(STRUCTURE), cache.residentBytes());
+        assertThrows(NoSuchFileException.class, ()->cache.get("nobody"));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() throws IOException
+    {
+        AtomicInteger loads = new AtomicInteger();
+        ModelCache cache = new ModelCache.Builder()
+            .withLoader(id->{loads.incrementAndGet(); return small();})
+            .withByteBudget(2*ModelCache.footprint(STRUCTURE))
+            .build();
+
+        cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");     // evicts b
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        cache.get("a");
+        assertEquals(3, loads.get());
+        cache.get("b");
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void aNetworkOverBudgetIsReturnedButNotKept() throws IOException
+    {
+        Network big = new Network.Builder().withStructure(new int[] {50,50,1})
+                                           .build();
+        ModelCache cache = new ModelCache.Builder()
+            .withLoader(id->id.equals("big") ? big : small())
+            .withByteBudget(2*ModelCache.footprint(STRUCTURE))
+            .build();
+
+        cache.get("a");
+        assertSame(big, cache.get("big"));
+
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.evictions());
+        assertEquals(ModelCache.footprint(STRUCTURE), cache.residentBytes());
+        cache.get("a");
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void invalidatingDuringALoadKeepsItOut() throws Exception
+    {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ModelCache cache = new ModelCache.Builder()
+            .withLoader(id->{
+                loadStarted.countDown();
+                try { release.await(); }
+                catch(InterruptedException e) { throw new IOException(e); }
+                return small();
+            })
+            .withByteBudget(1 << 20)
+            .build();
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<Network> stale = pool.submit(()->cache.get("m"));
+            loadStarted.await();
+            cache.invalidate("m");
+            release.countDown();
+
+            stale.get();
+            assertEquals(0, cache.size());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception
+    {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ModelCache cache = new ModelCache.Builder()
+            .withLoader(id->{
+                loads.incrementAndGet();
+                try { release.await(); }
+                catch(InterruptedException e) { throw new IOException(e); }
+                return small();
+            })
+            .withByteBudget(1 << 20)
+            .build();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<Network>> results = new ArrayList<>();
+            for(int i=0; i<8; i++) results.add(pool.submit(()->cache.get("m")));
+            Thread.sleep(100);
+            release.countDown();
+
+            Network net = results.get(0).get();
+            for(Future<Network> result : results) assertSame(net, result.get());
+            assertEquals(1, loads.get());
+            assertTrue(cache.misses() >= 1);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+}
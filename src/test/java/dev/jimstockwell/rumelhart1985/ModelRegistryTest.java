@@ -0,0 +1,100 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+public class ModelRegistryTest
+{
+    @TempDir
+    Path directory;
+
+    private static Network xor(int epochs)
+    {
+        return new Network.Builder().withStructure(new int[] {2,5,1})
+                                    .build()
+                                    .learn(Patterns.xor(), epochs);
+    }
+
+    private static void await(BooleanSupplier condition)
+    throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + 30_000_000_000L;
+        while(!condition.getAsBoolean())
+        {
+            if(System.nanoTime() > deadline)
+                throw new AssertionError("timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void loadsTheExistingCheckpoint() throws IOException
+    {
+        Network net = xor(1);
+        Checkpoint.write(net, directory.resolve("v1.net"));
+
+        try(ModelRegistry registry = new ModelRegistry.Builder()
+                .withDirectory(directory)
+                .build())
+        {
+            assertEquals(net, registry.current());
+        }
+    }
+
+    @Test
+    public void swapsToANewCheckpoint() throws Exception
+    {
+        try(ModelRegistry registry = new ModelRegistry.Builder()
+                .withDirectory(directory)
+                .withWarmUpPasses(10)
+                .build())
+        {
+            assertFalse(registry.tryCurrent().isPresent());
+            assertThrows(IllegalStateException.class, registry::current);
+
+            Network v1 = xor(1);
+            Checkpoint.write(v1, directory.resolve("v1.net"));
+            await(()->registry.tryCurrent().filter(v1::equals).isPresent());
+
+            Network v2 = xor(2);
+            Checkpoint.write(v2, directory.resolve("v2.net"));
+            await(()->registry.tryCurrent().filter(v2::equals).isPresent());
+        }
+    }
+
+    @Test
+    public void skipsUnreadableAndIncompatibleCheckpoints() throws Exception
+    {
+        Network v1 = xor(1);
+        Checkpoint.write(v1, directory.resolve("v1.net"));
+
+        try(ModelRegistry registry = new ModelRegistry.Builder()
+                .withDirectory(directory)
+                .withMemoryMapping(true)
+                .build())
+        {
+            Files.write(directory.resolve("junk.net"), new byte[] {1,2,3});
+            await(()->registry.rejections() >= 1);
+
+            Network wider = new Network.Builder().withStructure(new int[] {3,5,1})
+                                                 .build();
+            long before = registry.rejections();
+            Checkpoint.write(wider, directory.resolve("wider.net"));
+            await(()->registry.rejections() > before);
+
+            assertArrayEquals(v1.answer(new double[] {0,1}),
+                              registry.current().answer(new double[] {0,1}));
+            assertEquals(1, registry.swaps());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+public class NetworkDeltaTest
+{
+    private Network start()
+    {
+        return new Network.Builder().withStructure(new int[] {2,5,1})
+                                    .withEta(.25)
+                                    .build()
+                                    .learn(Patterns.xor(), 10);
+    }
+
+    @Test
+    public void applyingADeltaReproducesTheLaterNetwork()
+    {
+        Network from = start();
+        Network to = from.learn(Patterns.xor(), 1);
+
+        NetworkDelta delta = NetworkDelta.between(from, to);
+
+        assertTrue(delta.appliesTo(from));
+        assertEquals(to, delta.applyTo(from));
+    }
+
+    @Test
+    public void deltaSurvivesSerialization()
+    {
+        Network from = start();
+        Network to = from.learn(Patterns.xor(), 1);
+        NetworkDelta delta = NetworkDelta.between(from, to);
+
+        NetworkDelta read = NetworkDelta.fromBytes(delta.toBytes());
+
+        assertEquals(delta, read);
+        assertEquals(to, read.applyTo(from));
+    }
+
+    @Test
+    public void sparseUpdatesCompressWell()
+    {
+        double[] input = new double[200];
+        input[3] = 1;
+        input[77] = 1;
+        double[] output = new double[10];
+        output[0] = 1;
+        Patterns pats = new Patterns(new double[][][] {{input, output}});
+        Network from = new Network.Builder().withStructure(new int[] {200,50,10})
+                                            .build();
+        Network to = from.learn(pats, 1);
+
+        NetworkDelta delta = NetworkDelta.between(from, to);
+        final int raw = (200*50 + 50*10 + 50 + 10) * Double.BYTES;
+
+        assertTrue(delta.compressedSize() < raw / 4);
+        assertEquals(to, delta.applyTo(from));
+    }
+
+    @Test
+    public void deltaIsRejectedByTheWrongBase()
+    {
+        Network from = start();
+        Network to = from.learn(Patterns.xor(), 1);
+        NetworkDelta delta = NetworkDelta.between(from, to);
+
+        assertFalse(delta.appliesTo(to));
+        assertThrows(IllegalArgumentException.class, ()->delta.applyTo(to));
+    }
+
+    @Test
+    public void corruptedDeltaIsDetected()
+    {
+        Network from = start();
+        Network to = from.learn(Patterns.xor(), 1);
+        byte[] bytes = NetworkDelta.between(from, to).toBytes();
+        bytes[bytes.length-3] ^= 0x10;
+
+        assertThrows(RuntimeException.class,
+                     ()->NetworkDelta.fromBytes(bytes).applyTo(from));
+    }
+
+    @Test
+    public void badLengthsAreRejected()
+    {
+        Network from = start();
+        NetworkDelta delta = NetworkDelta.between(from, from.learn(Patterns.xor(), 1));
+        byte[] bytes = delta.toBytes();
+
+        assertThrows(IllegalArgumentException.class,
+                     ()->NetworkDelta.fromBytes(Arrays.copyOf(bytes, bytes.length-1)));
+        assertThrows(IllegalArgumentException.class,
+                     ()->NetworkDelta.fromBytes(Arrays.copyOf(bytes, bytes.length+1)));
+
+        byte[] huge = bytes.clone();
+        ByteBuffer.wrap(huge)
+                  .order(ByteOrder.LITTLE_ENDIAN)
+                  .putInt(huge.length - delta.compressedSize() - Integer.BYTES,
+                          Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class,
+                     ()->NetworkDelta.fromBytes(huge));
+    }
+
+    @Test
+    public void differentStructuresHaveNoDelta()
+    {
+        Network a = new Network.Builder().withStructure(new int[] {2,2,1}).build();
+        Network b = new Network.Builder().withStructure(new int[] {2,3,1}).build();
+
+        assertThrows(IllegalArgumentException.class,
+                     ()->NetworkDelta.between(a, b));
+    }
+}
@@ -1,5 +1,6 @@
 package dev.jimstockwell.rumelhart1985;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -514,6 +515,150 @@ public class NetworkTest
         net.learn(pattern,1); // Check that net matches the pattern too
     }
 
+    @Test
+    public void aPassStepsThroughItsPatternsInTurn()
+    {
+        var net = new Network.Builder().withStructure(new int[] {2,3,1})
+                                       .build();
+        Patterns xor = Patterns.xor();
+
+        Network stepped = net;
+        for(int i=0; i<xor.size(); i++)
+        {
+            stepped = stepped.learn(xor.onePattern(i), 1);
+        }
+
+        assertEquals(stepped, net.learn(xor, 1));
+        assertNotEquals(net, stepped);
+    }
+
+    @Test
+    public void sparseInputsLearnLikeDenseInputs()
+    {
+        double[] input = new double[200];
+        input[3] = 1;
+        input[150] = -0.5;
+        Patterns dense = new Patterns(new double[][][] {{input,{1,0}}});
+        Patterns sparse = dense.encodedAs(
+            Patterns.Encoding.SPARSE,
+            Patterns.Encoding.DOUBLE);
+
+        var net = new Network.Builder().withStructure(new int[] {200,3,2})
+                                       .build();
+        Network fromDense = net.learn(dense, 3);
+        Network fromSparse = net.learn(sparse, 3);
+
+        assertEquals(fromDense.loss(dense), fromSparse.loss(sparse), 1e-12);
+        for(int out=0; out<3; out++)
+        {
+            for(int in=0; in<200; in++)
+            {
+                assertEquals(
+                    fromDense.getW().getWeight(0,out,in),
+                    fromSparse.getW().getWeight(0,out,in),
+                    1e-12);
+            }
+        }
+
+        // zero inputs leave their weights alone
+        assertEquals(
+            net.getW().getWeight(0,1,4),
+            fromSparse.getW().getWeight(0,1,4));
+    }
+
+    @Test
+    public void oneToleranceCheckServesEveryPass()
+    {
+        Patterns xor = Patterns.xor();
+        Patterns sparseXor = xor.encodedAs(
+            Patterns.Encoding.SPARSE,
+            Patterns.Encoding.DOUBLE);
+        Network net = new Network.Builder().withStructure(new int[] {2,3,2,1})
+                                           .withEta(2)
+                                           .build();
+        ToleranceCheck check = new ToleranceCheck(net, xor, .4);
+        ToleranceCheck sparseCheck = new ToleranceCheck(net, sparseXor, .4);
+        for(int pass=0; pass<50; pass++)
+        {
+            assertEquals(net.closeEnough(xor, .4), check.passes(net));
+            assertEquals(net.closeEnough(xor, .4), sparseCheck.passes(net));
+            net = net.learn(xor, 20);
+        }
+    }
+
+    @Test
+    public void multiplicityScalesTheLearningStep()
+    {
+        double[][][] w = {{{1}}};
+        double[][] theta = {{0}};
+        var builder = new Network.Builder().withStructure(new int[] {1,1})
+                                           .withW(makeWeights(w))
+                                           .withTheta(theta)
+                                           .withEta(.5);
+        Network net = builder.build();
+        Network bigStepNet = builder.withEta(1.5).build();
+
+        Patterns tripled = new Patterns(new double[][][] {
+            {{1},{1}}, {{1},{1}}, {{1},{1}}
+        }).deduplicated();
+        Patterns single = new Patterns(new double[][][] {{{1},{1}}});
+
+        assertEquals(
+            bigStepNet.learn(single,1).getW().getWeight(0,0,0),
+            net.learn(tripled,1).getW().getWeight(0,0,0),
+            1e-12);
+        assertEquals(
+            bigStepNet.learn(single,1).theta()[0][0],
+            net.learn(tripled,1).theta()[0][0],
+            1e-12);
+    }
+
+    @Test
+    public void repeatedSteppingTakesAStepPerCopy()
+    {
+        double[][][] w = {{{1}}};
+        double[][] theta = {{0}};
+        Network net = new Network.Builder().withStructure(new int[] {1,1})
+                                           .withW(makeWeights(w))
+                                           .withTheta(theta)
+                                           .withEta(.5)
+                                           .build();
+
+        Patterns copies = new Patterns(new double[][][] {
+            {{1},{1}}, {{1},{1}}, {{1},{1}}
+        });
+        Patterns tripled = copies.deduplicated(Patterns.Stepping.REPEATED);
+
+        assertEquals(
+            net.learn(copies,1).getW().getWeight(0,0,0),
+            net.learn(tripled,1).getW().getWeight(0,0,0),
+            1e-12);
+        assertEquals(
+            net.learn(copies,1).theta()[0][0],
+            net.learn(tripled,1).theta()[0][0],
+            1e-12);
+    }
+
+    @Test
+    public void largeMultiplicitiesDoNotOvershoot()
+    {
+        double[][][] w = {{{0}}};
+        double[][] theta = {{0}};
+        Network net = new Network.Builder().withStructure(new int[] {1,1})
+                                           .withW(makeWeights(w))
+                                           .withTheta(theta)
+                                           .withEta(.1)
+                                           .build();
+        double[][][] copies = new double[1000][][];
+        Arrays.fill(copies, new double[][] {{1},{.6}});
+        Patterns heavy = new Patterns(copies).deduplicated();
+
+        // one step 1000 times as large would leap far past the target
+        Network learned = net.learn(heavy,1);
+        assertTrue(learned.loss(heavy) < net.loss(heavy));
+        assertEquals(.6, learned.answer(new double[] {1})[0], .01);
+    }
+
     @Test
     public void correctLossForOnePattern()
     {
@@ -780,6 +925,154 @@ public class NetworkTest
     }
     
 
+    @Test
+    public void answerForSelectedOutputsMatchesFullAnswer()
+    {
+        Network dense = new Network.Builder().withStructure(new int[] {3,4,5})
+                                             .build();
+        double[] input = {.1, .5, .9};
+        double[] full = dense.answer(input);
+
+        assertArrayEquals(
+            new double[] {full[4], full[1], full[4]},
+            dense.answer(input, new int[] {4,1,4}),
+            1e-12);
+        assertArrayEquals(new double[] {}, dense.answer(input, new int[] {}));
+        assertThrows(IllegalArgumentException.class,
+                     ()->dense.answer(input, new int[] {5}));
+    }
+
+    @Test
+    public void answerForSelectedOutputsSkipsPrunedUnits()
+    {
+        // hidden unit 1 feeds only output 1, so output 0 does not need it
+        int[] structure = {2,3,2,2};
+        Network pruned = new Network.Builder()
+            .withStructure(structure)
+            .withW(new EdgeWeights(structure, (layer,in,out) ->
+                layer == 1 && in == 1 && out == 0 ? 0.0 : .1*(layer+in+out+1)))
+            .build();
+        double[] input = {.3, .7};
+        double[] full = pruned.answer(input);
+
+        for(int out=0; out<2; out++)
+        {
+            assertArrayEquals(new double[] {full[out]},
+                              pruned.answer(input, new int[] {out}),
+                              1e-12);
+        }
+    }
+
+    @Test
+    public void layersSplitANetworkIntoHalves()
+    {
+        Network encoder = new Network.Builder().withStructure(new int[] {4,2,4})
+                                               .build();
+        Network encode = encoder.layers(0,2);
+        Network decode = encoder.layers(1,3);
+        double[] input = {1,0,0,0};
+
+        assertArrayEquals(new int[] {4,2}, encode.structure());
+        assertArrayEquals(new int[] {2,4}, decode.structure());
+        assertArrayEquals(
+            encoder.answer(input),
+            decode.answer(encode.answer(input)),
+            1e-12);
+        assertEquals(encoder.getW().getWeight(1,3,1),
+                     decode.getW().getWeight(0,3,1));
+        assertThrows(IllegalArgumentException.class, ()->encoder.layers(1,2));
+        assertThrows(IllegalArgumentException.class, ()->encoder.layers(0,4));
+    }
+
+    @Test
+    public void layerViewsEqualCopiesOfTheirValues()
+    {
+        Network encoder = new Network.Builder().withStructure(new int[] {4,2,4})
+                                               .build();
+        Network decode = encoder.layers(1,3);
+        double[][] thetas = {new double[4]};
+        Arrays.setAll(thetas[0], node -> decode.thetas().getTheta(0, node));
+        Network copy = Network.Builder.from(decode)
+            .withW(decode.getW().populate(decode.getW()::getWeight))
+            .withTheta(thetas)
+            .build();
+
+        assertEquals(copy, decode);
+        assertEquals(decode, copy);
+        assertEquals(copy.hashCode(), decode.hashCode());
+        assertEquals(decode, encoder.layers(1,3));
+        assertNotEquals(encoder.layers(0,2), decode);
+    }
+
+    @Test
+    public void layerViewsCanLearn()
+    {
+        Network decode = new Network.Builder().withStructure(new int[] {2,3,1})
+                                              .build()
+                                              .layers(1,3);
+        Patterns pats = new Patterns(new double[][][] {
+            {{0,0,0},{1}}, {{1,1,1},{0}}});
+
+        Network learned = decode.learn(pats, 5);
+
+        assertEquals(decode.structure().length, learned.structure().length);
+        assertTrue(learned.loss(pats) < decode.loss(pats));
+    }
+
+    @Test
+    public void activationsExportAHiddenLayer()
+    {
+        Network encoder = new Network.Builder().withStructure(new int[] {4,2,4})
+                                               .build();
+        double[][] inputs = {{1,0,0,0},{0,1,0,0},{0,0,1,0},{0,0,0,1}};
+
+        double[][] hidden = encoder.activations(inputs, 1);
+
+        for(int b=0; b<inputs.length; b++)
+        {
+            assertArrayEquals(encoder.outputs(inputs[b]).values()[1],
+                              hidden[b], 1e-12);
+        }
+        assertArrayEquals(inputs[2], encoder.activations(inputs, 0)[2]);
+        assertArrayEquals(encoder.answer(inputs[3]),
+                          encoder.activations(inputs, 2)[3], 1e-12);
+    }
+
+    @Test
+    public void learnConvergesWithoutHiddenLayersAndWithSeveralOutputs()
+    {
+        Patterns andOr = new Patterns(new double[][][] {
+            {{0,0},{0,0}}, {{0,1},{0,1}}, {{1,0},{0,1}}, {{1,1},{1,1}}});
+        Patterns or = new Patterns(new double[][][] {
+            {{0,0},{0}}, {{0,1},{1}}, {{1,0},{1}}, {{1,1},{1}}});
+
+        for(Network net : new Network[] {
+                new Network.Builder().withStructure(new int[] {2,4,2})
+                                     .build()
+                                     .learn(andOr),
+                new Network.Builder().withStructure(new int[] {2,1})
+                                     .build()
+                                     .learn(or)})
+        {
+            Patterns pats = net.structure().length == 3 ? andOr : or;
+            for(int p=0; p<pats.size(); p++)
+            {
+                assertArrayEquals(pats.getOutputPattern(p),
+                                  net.answer(pats.getInputPattern(p)), .1);
+            }
+        }
+    }
+
+    @Test
+    public void logisticInverseIsTheLogit()
+    {
+        ActivationFunction af = new LogisticActivationFunction();
+
+        assertEquals(.7, af.f(af.inverse(.7) - .3, .3), 1e-12);
+        assertEquals(Double.NEGATIVE_INFINITY, af.inverse(-.1));
+        assertEquals(Double.POSITIVE_INFINITY, af.inverse(1));
+    }
+
     private String deepToString(double[] x)
     {
         Double[] boxed =
@@ -0,0 +1,112 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class NormalizationTest
+{
+    private final Patterns wide = new Patterns(new double[][][] {
+        {{100, 0, 7},{1}},
+        {{300, 2, 7},{0}},
+        {{200, 4, 7},{1}}
+    });
+
+    @Test
+    public void minMaxMapsOntoZeroToOne()
+    {
+        Normalization n = Normalization.minMax(wide);
+
+        assertArrayEquals(new double[] {0, 0, 0}, n.apply(new double[] {100,0,7}));
+        assertArrayEquals(new double[] {1, 1, 0}, n.apply(new double[] {300,4,7}));
+        assertArrayEquals(new double[] {.5,.5, 1}, n.apply(new double[] {200,2,8}));
+        assertFalse(n.preservesZeros());
+    }
+
+    @Test
+    public void standardizeGivesZeroMeanUnitVariance()
+    {
+        Normalization n = Normalization.standardize(wide);
+
+        double[][] normalized = {
+            n.apply(wide.getInputPattern(0)),
+            n.apply(wide.getInputPattern(1)),
+            n.apply(wide.getInputPattern(2))};
+        for(int f=0; f<2; f++)
+        {
+            double mean = 0;
+            double squares = 0;
+            for(double[] row : normalized) mean += row[f]/3;
+            for(double[] row : normalized) squares += row[f]*row[f]/3;
+            assertEquals(0, mean, 1e-12);
+            assertEquals(1, squares, 1e-12);
+        }
+        assertEquals(0, normalized[0][2]); // constant feature is only shifted
+    }
+
+    @Test
+    public void standardizeHonorsMultiplicity()
+    {
+        var withCopies = new Patterns(new double[][][] {
+            {{1},{1}}, {{1},{1}}, {{4},{0}}
+        });
+
+        assertEquals(
+            Normalization.standardize(withCopies),
+            Normalization.standardize(withCopies.deduplicated()));
+    }
+
+    @Test
+    public void sparseInputsStaySparseWhenZerosArePreserved()
+    {
+        Normalization n = Normalization.of(new double[3], new double[] {1,2,3});
+        SparseVector x = new SparseVector(3, new int[] {2}, new double[] {5});
+
+        assertTrue(n.preservesZeros());
+        assertEquals(
+            new SparseVector(3, new int[] {2}, new double[] {15}),
+            n.apply(x));
+        assertThrows(
+            IllegalStateException.class,
+            () -> Normalization.minMax(wide).apply(x));
+    }
+
+    @Test
+    public void networkAppliesItsNormalization()
+    {
+        Normalization n = Normalization.minMax(wide);
+        var builder = new Network.Builder().withStructure(new int[] {3,1})
+                                           .withW(new EdgeWeights(
+                                               new double[][][] {{{1,2,3}}}))
+                                           .withTheta(new double[][] {{0}});
+        Network raw = builder.build();
+        Network normalized = builder.withNormalization(n).build();
+
+        double[] input = {200, 2, 8};
+        assertEquals(
+            raw.answer(n.apply(input))[0],
+            normalized.answer(input)[0]);
+
+        var normalizedPatterns = new Patterns(new double[][][] {
+            {n.apply(wide.getInputPattern(1)), wide.getOutputPattern(1)}});
+        Network learnedRaw = raw.learn(normalizedPatterns, 1);
+        Network learnedNormalized = normalized.learn(wide.onePattern(1), 1);
+        assertEquals(learnedRaw.getW(), learnedNormalized.getW());
+        assertEquals(n, learnedNormalized.getNormalization().get());
+    }
+
+    @Test
+    public void networkChecksNormalizationWidth()
+    {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new Network.Builder().withStructure(new int[] {2,1})
+                                       .withNormalization(
+                                           Normalization.minMax(wide))
+                                       .build());
+    }
+}
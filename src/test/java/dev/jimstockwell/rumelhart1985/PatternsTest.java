@@ -1,5 +1,6 @@
 package dev.jimstockwell.rumelhart1985;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -58,4 +59,195 @@ public class PatternsTest
         assertNotEquals(first,second);
     }
 
+    @Test
+    public void encodingsDecodeToTheSameValues()
+    {
+        var xor = Patterns.xor();
+
+        for(var in : Patterns.Encoding.values())
+        {
+            for(var out : Patterns.Encoding.values())
+            {
+                assertEquals(xor, xor.encodedAs(in,out));
+            }
+        }
+
+        var wide = new double[70];
+        wide[0] = 1;
+        wide[64] = 1;
+        wide[69] = 1;
+        var widePatterns = new Patterns(new double[][][] {{wide,{1}}});
+        assertEquals(
+            widePatterns,
+            widePatterns.encodedAs(
+                Patterns.Encoding.BIT,
+                Patterns.Encoding.BIT));
+    }
+
+    @Test
+    public void hashesTellMiddlePatternsApart()
+    {
+        var xor = Patterns.xor();
+        var changed = new Patterns(new double[][][] {
+            {{0,0},{0}}, {{0,1},{0}}, {{1,0},{1}}, {{1,1},{0}}});
+
+        assertNotEquals(xor, changed);
+        assertNotEquals(xor.hashCode(), changed.hashCode());
+        assertEquals(xor.hashCode(), xor.hashCode());
+    }
+
+    @Test
+    public void likeEncodingsCompareTheirStorage()
+    {
+        var xor = Patterns.xor();
+
+        for(var encoding : Patterns.Encoding.values())
+        {
+            var a = xor.encodedAs(encoding, encoding);
+            var b = xor.encodedAs(encoding, encoding);
+            assertEquals(a, b);
+            assertEquals(a.hashCode(), b.hashCode());
+            assertEquals(xor.hashCode(), a.hashCode());
+        }
+        assertNotEquals(
+            xor.encodedAs(Patterns.Encoding.BIT, Patterns.Encoding.BIT),
+            Patterns.flip().encodedAs(Patterns.Encoding.BIT, Patterns.Encoding.BIT));
+    }
+
+    @Test
+    public void tablesTooLargeForAnArrayAreRejected()
+    {
+        assertEquals(12, Vectors.elementCount(3, 4));
+        assertThrows(IllegalArgumentException.class,
+                     () -> Vectors.elementCount(1 << 16, 1 << 16));
+    }
+
+    @Test
+    public void lossyOrUnfitEncodingsAreHandled()
+    {
+        var fractional = new Patterns(new double[][][] {{{0.5,-3},{1}}});
+
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> fractional.encodedAs(
+                    Patterns.Encoding.BIT,
+                    Patterns.Encoding.DOUBLE));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> fractional.encodedAs(
+                    Patterns.Encoding.BYTE,
+                    Patterns.Encoding.DOUBLE));
+
+        var big = new Patterns(new double[][][] {{{200},{1}}});
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> big.encodedAs(
+                    Patterns.Encoding.BYTE,
+                    Patterns.Encoding.DOUBLE));
+
+        var asFloats = fractional.encodedAs(
+            Patterns.Encoding.FLOAT,
+            Patterns.Encoding.FLOAT);
+        assertEquals(0.5, asFloats.getInputPattern(0)[0]);
+        assertEquals(-3.0, asFloats.getInputPattern(0)[1]);
+    }
+
+    @Test
+    public void encodedPatternsCanBeLearned()
+    {
+        var bits = Patterns.xor().encodedAs(
+            Patterns.Encoding.BIT,
+            Patterns.Encoding.BIT);
+        Network net = new Network.Builder().withStructure(new int[] {2,3,1})
+                                           .build();
+
+        // Bits take the sparse path, which sums in another order,
+        // so the two can differ in the last bits.
+        Network fromDoubles = net.learn(Patterns.xor(), 2);
+        Network fromBits = net.learn(bits, 2);
+        for(int i=0; i<bits.size(); i++)
+        {
+            double[] input = Patterns.xor().getInputPattern(i);
+            assertArrayEquals(
+                fromDoubles.answer(input),
+                fromBits.answer(input),
+                1e-12);
+        }
+    }
+
+    @Test
+    public void sparseInputsKeepOnlyNonZeros()
+    {
+        var dense = new double[][][] {{{0,0,2.5,0,-1},{1}},{{0,0,0,0,0},{0}}};
+        var sparse = new Patterns(dense).encodedAs(
+            Patterns.Encoding.SPARSE,
+            Patterns.Encoding.DOUBLE);
+
+        assertTrue(sparse.hasSparseInputs());
+        assertEquals(new Patterns(dense), sparse);
+        assertEquals(
+            new SparseVector(5, new int[] {2,4}, new double[] {2.5,-1}),
+            sparse.getSparseInputPattern(0));
+        assertEquals(0, sparse.getSparseInputPattern(1).nonZeroCount());
+
+        var bits = Patterns.xor().encodedAs(
+            Patterns.Encoding.BIT,
+            Patterns.Encoding.DOUBLE);
+        assertTrue(bits.hasSparseInputs());
+        assertEquals(
+            new SparseVector(2, new int[] {1}, new double[] {1}),
+            bits.getSparseInputPattern(1));
+    }
+
+    @Test
+    public void deduplicationCollapsesCopiesIntoMultiplicities()
+    {
+        var withCopies = new Patterns(new double[][][] {
+            {{0,1},{1}},
+            {{1,1},{0}},
+            {{0,1},{1}},
+            {{0,1},{0}},
+            {{0,1},{1}}
+        }).encodedAs(Patterns.Encoding.BIT, Patterns.Encoding.DOUBLE);
+
+        var unique = withCopies.deduplicated();
+
+        assertEquals(3, unique.size());
+        assertEquals(3.0, unique.getMultiplicity(0));
+        assertEquals(1.0, unique.getMultiplicity(1));
+        assertEquals(1.0, unique.getMultiplicity(2));
+        assertTrue(unique.hasSparseInputs()); // kept its encoding
+        assertEquals(1.0, unique.getOutputPattern(0)[0]);
+        assertEquals(0.0, unique.getOutputPattern(2)[0]);
+
+        assertEquals(unique, unique.deduplicated());
+        assertNotEquals(withCopies, unique);
+        assertEquals(Patterns.xor(), Patterns.xor().deduplicated());
+
+        var repeated = withCopies.deduplicated(Patterns.Stepping.REPEATED);
+        assertNotEquals(unique, repeated);
+        assertEquals(Patterns.Stepping.REPEATED,
+                     repeated.encodedAs(Patterns.Encoding.DOUBLE,
+                                        Patterns.Encoding.DOUBLE).stepping());
+        assertEquals(Patterns.Stepping.REPEATED,
+                     repeated.onePattern(1).stepping());
+    }
+
+    @Test
+    public void deduplicatedPatternsHaveTheSameLoss()
+    {
+        var withCopies = new Patterns(new double[][][] {
+            {{0,1},{1}},
+            {{1,1},{0}},
+            {{0,1},{1}}
+        });
+        Network net = new Network.Builder().withStructure(new int[] {2,2,1})
+                                           .build();
+
+        assertEquals(
+            net.loss(withCopies),
+            net.loss(withCopies.deduplicated()),
+            1e-12);
+    }
+
 }
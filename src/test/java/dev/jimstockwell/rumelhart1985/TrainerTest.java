@@ -0,0 +1,220 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class TrainerTest
+{
+    @TempDir
+    Path directory;
+
+    private final Network start =
+        new Network.Builder().withStructure(new int[] {2,3,1})
+                             .withEta(.5)
+                             .build();
+
+    @Test
+    public void trainsForTheSpecifiedEpochs()
+    {
+        Trainer trainer = new Trainer.Builder().withEpochs(7).build();
+
+        assertEquals(
+            start.learn(Patterns.xor(), 7),
+            trainer.train(start, Patterns.xor()));
+    }
+
+    @Test
+    public void finalCheckpointRecordsTheEpochs() throws IOException
+    {
+        Path file = directory.resolve("run.net");
+        Trainer trainer = new Trainer.Builder().withEpochs(5)
+                                               .withCheckpointFile(file)
+                                               .withCheckpointEveryEpochs(2)
+                                               .withCheckpointEvery(Duration.ZERO)
+                                               .build();
+
+        Network trained = trainer.train(start, Patterns.xor());
+
+        assertEquals(trained, Checkpoint.read(file));
+        assertEquals(5, Checkpoint.epochs(file));
+    }
+
+    @Test
+    public void resumedTrainingEndsWhereUninterruptedTrainingDoes()
+    throws IOException
+    {
+        Path file = directory.resolve("resumed.net");
+
+        // a run that "died" after 4 of its 10 epochs
+        new Trainer.Builder().withEpochs(4)
+                             .withCheckpointFile(file)
+                             .build()
+                             .train(start, Patterns.xor());
+
+        Network resumed = new Trainer.Builder().withEpochs(10)
+                                               .withCheckpointFile(file)
+                                               .build()
+                                               .resume(Patterns.xor());
+
+        assertEquals(start.learn(Patterns.xor(), 10), resumed);
+        assertEquals(10, Checkpoint.epochs(file));
+    }
+
+    @Test
+    public void resumeNeedsAnEpochCount() throws IOException
+    {
+        Path file = directory.resolve("plain.net");
+        Checkpoint.write(start, file);
+        Trainer trainer = new Trainer.Builder().withCheckpointFile(file).build();
+
+        assertEquals(-1, Checkpoint.epochs(file));
+        assertThrows(
+            IllegalStateException.class,
+            () -> trainer.resume(Patterns.xor()));
+        assertThrows(
+            IllegalStateException.class,
+            () -> new Trainer.Builder().build().resume(Patterns.xor()));
+    }
+
+    @Test
+    public void stopsOnceTheTrainingPassSaysConverged()
+    {
+        Patterns or = new Patterns(new double[][][] {
+            {{0,0},{0}}, {{0,1},{1}}, {{1,0},{1}}, {{1,1},{1}}});
+        Network simple = new Network.Builder().withStructure(new int[] {2,1})
+                                              .build();
+        Trainer trainer = new Trainer.Builder().withEpochs(100_000)
+                                               .withConvergenceTolerance(.1)
+                                               .build();
+
+        Network trained = trainer.train(simple, or);
+
+        // a running estimate, so the exact answers are close, if not within
+        for(int p=0; p<or.size(); p++)
+        {
+            assertEquals(or.getOutputPattern(p)[0],
+                         trained.answer(or.getInputPattern(p))[0], .11);
+        }
+    }
+
+    @Test
+    public void exactRecheckConfirmsConvergence() throws IOException
+    {
+        Path file = directory.resolve("converged.net");
+        Patterns or = new Patterns(new double[][][] {
+            {{0,0},{0}}, {{0,1},{1}}, {{1,0},{1}}, {{1,1},{1}}});
+        Network simple = new Network.Builder().withStructure(new int[] {2,1})
+                                              .build();
+        Trainer trainer = new Trainer.Builder().withEpochs(100_000)
+                                               .withConvergenceTolerance(.1)
+                                               .withConvergenceCheckEvery(3)
+                                               .withExactRecheck(true)
+                                               .withCheckpointFile(file)
+                                               .build();
+
+        Network trained = trainer.train(simple, or);
+
+        assertTrue(trained.closeEnough(or, .1));
+        final long epochs = Checkpoint.epochs(file);
+        assertTrue(epochs < 100_000);
+        assertEquals(0, epochs % 3);
+        assertEquals(simple.learn(or, (int) epochs), trained);
+    }
+
+    /** The same input can't answer both 0 and 1. */
+    private static final Patterns contradictory = new Patterns(new double[][][] {
+        {{1,1},{0}}, {{1,1},{1}}});
+
+    @Test
+    public void runReportsTheEpochsAndTheBestNetwork()
+    {
+        Trainer trainer = new Trainer.Builder().withEpochs(7).build();
+
+        TrainingResult result = trainer.run(start, Patterns.xor());
+
+        assertEquals(TrainingResult.StopReason.EPOCHS, result.reason());
+        assertEquals(7, result.epochs());
+        assertEquals(start.learn(Patterns.xor(), 7), result.network());
+        assertTrue(result.bestLoss() <= result.network().loss(Patterns.xor()));
+        assertEquals(result.best().loss(Patterns.xor()), result.bestLoss());
+    }
+
+    @Test
+    public void cancelledTokenStopsTraining()
+    {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        Trainer trainer = new Trainer.Builder().withEpochs(Integer.MAX_VALUE)
+                                               .withCancellation(token)
+                                               .build();
+
+        TrainingResult result = trainer.run(start, Patterns.xor());
+
+        assertEquals(TrainingResult.StopReason.CANCELLED, result.reason());
+        assertEquals(0, result.epochs());
+        assertSame(start, result.network());
+        assertSame(start, result.best());
+    }
+
+    @Test
+    public void interruptStopsTraining()
+    {
+        Trainer trainer = new Trainer.Builder().withEpochs(Integer.MAX_VALUE)
+                                               .build();
+
+        Thread.currentThread().interrupt();
+        TrainingResult result;
+        try
+        {
+            result = trainer.run(start, Patterns.xor());
+        }
+        finally
+        {
+            assertTrue(Thread.interrupted());
+        }
+
+        assertEquals(TrainingResult.StopReason.INTERRUPTED, result.reason());
+    }
+
+    @Test
+    public void timeLimitBoundsUnlearnableTraining()
+    {
+        Trainer trainer = new Trainer.Builder()
+            .withEpochs(Integer.MAX_VALUE)
+            .withConvergenceTolerance(.1)
+            .withTimeLimit(Duration.ofMillis(100))
+            .build();
+
+        TrainingResult result = trainer.run(start, contradictory);
+
+        assertEquals(TrainingResult.StopReason.DEADLINE, result.reason());
+        assertTrue(result.epochs() > 0);
+    }
+
+    @Test
+    public void plateauStopsUnlearnableTraining()
+    {
+        Trainer trainer = new Trainer.Builder()
+            .withEpochs(Integer.MAX_VALUE)
+            .withConvergenceTolerance(.1)
+            .withPlateau(1e-4, 50)
+            .build();
+
+        TrainingResult result = trainer.run(start, contradictory);
+
+        assertEquals(TrainingResult.StopReason.PLATEAU, result.reason());
+        assertTrue(result.bestLoss() <= result.network().loss(contradictory));
+        assertEquals(result.best().loss(contradictory), result.bestLoss());
+        assertEquals(result.network(),
+                     start.learn(contradictory, (int) result.epochs()));
+    }
+}
@@ -0,0 +1,101 @@
+package dev.jimstockwell.rumelhart1985;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class TrainingJobTest
+{
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final Network start =
+        new Network.Builder().withStructure(new int[] {2,3,1})
+                             .withEta(.5)
+                             .build();
+
+    /** The same input can't answer both 0 and 1. */
+    private static final Patterns contradictory = new Patterns(new double[][][] {
+        {{1,1},{0}}, {{1,1},{1}}});
+
+    @AfterEach
+    public void shutDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void endsWhereTrainDoes()
+    throws InterruptedException, ExecutionException, TimeoutException
+    {
+        Trainer trainer = new Trainer.Builder().withEpochs(50).build();
+
+        TrainingJob job = trainer.start(start, Patterns.xor(), executor);
+        Network trained = job.network().get(10, TimeUnit.SECONDS);
+
+        assertEquals(trainer.train(start, Patterns.xor()), trained);
+        assertEquals(50, job.epoch());
+        assertSame(trained, job.latest());
+        assertTrue(Double.isFinite(job.recentLoss()));
+        assertTrue(job.epochsPerSecond() > 0);
+    }
+
+    @Test
+    public void cancelStopsUnlearnableTraining()
+    throws InterruptedException, ExecutionException, TimeoutException
+    {
+        Trainer trainer = new Trainer.Builder().withEpochs(Integer.MAX_VALUE)
+                                               .build();
+
+        TrainingJob job = trainer.start(start, contradictory, executor);
+        while(job.epoch() == 0) Thread.sleep(1);
+        job.cancel();
+        TrainingResult result = job.result().get(10, TimeUnit.SECONDS);
+
+        assertEquals(TrainingResult.StopReason.CANCELLED, result.reason());
+        assertEquals(result.epochs(), job.epoch());
+        assertSame(result.network(), job.network().get());
+    }
+
+    @Test
+    public void cancellingTheFutureStopsTraining()
+    throws InterruptedException, ExecutionException, TimeoutException
+    {
+        Trainer trainer = new Trainer.Builder().withEpochs(Integer.MAX_VALUE)
+                                               .build();
+
+        TrainingJob job = trainer.start(start, contradictory, executor);
+        job.network().cancel(true);
+        TrainingResult result = job.result().get(10, TimeUnit.SECONDS);
+
+        assertEquals(TrainingResult.StopReason.CANCELLED, result.reason());
+    }
+
+    @Test
+    public void cancellingTheResultStopsTrainingWithoutAResult()
+    throws InterruptedException, ExecutionException, TimeoutException
+    {
+        Trainer trainer = new Trainer.Builder().withEpochs(Integer.MAX_VALUE)
+                                               .build();
+
+        TrainingJob job = trainer.start(start, contradictory, executor);
+        job.result().cancel(true);
+
+        // the executor's only thread is free once training stops
+        executor.submit(() -> {}).get(10, TimeUnit.SECONDS);
+        assertThrows(CancellationException.class, () -> job.result().get());
+        ExecutionException e = assertThrows(ExecutionException.class,
+                                            () -> job.network().get());
+        assertTrue(e.getCause() instanceof CancellationException);
+    }
+}
@@ -0,0 +1,199 @@
+package dev.jimstockwell.rumelhart1985.serving;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jimstockwell.rumelhart1985.Network;
+import dev.jimstockwell.rumelhart1985.Patterns;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InferenceServerTest
+{
+    private final Network net =
+        new Network.Builder().withStructure(new int[] {2,5,1})
+                             .build()
+                             .learn(Patterns.xor(), 10);
+
+    private static HttpResponse<String> post(InferenceServer server, String body)
+    throws Exception
+    {
+        URI uri = URI.create(
+            "http://localhost:"+server.address().getPort()+"/predict");
+        return HttpClient.newHttpClient().send(
+            HttpRequest.newBuilder(uri)
+                       .POST(HttpRequest.BodyPublishers.ofString(body))
+                       .build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static double[] parse(String line)
+    {
+        return Arrays.stream(line.split(","))
+                     .mapToDouble(Double::parseDouble)
+                     .toArray();
+    }
+
+    @Test
+    public void batchedAnswersMatchSingleAnswers()
+    {
+        double[][] inputs = {{0,0},{0,1},{1,0},{1,1}};
+
+        double[][] batched = net.answer(inputs);
+
+        for(int i=0; i<inputs.length; i++)
+        {
+            assertArrayEquals(net.answer(inputs[i]), batched[i], 1e-12);
+        }
+    }
+
+    @Test
+    public void answersEachLine() throws Exception
+    {
+        try(InferenceServer server = new InferenceServer.Builder()
+                .withNetwork(net)
+                .build())
+        {
+            HttpResponse<String> response = post(server, "0,1\n1 1\n");
+
+            assertEquals(200, response.statusCode());
+            String[] lines = response.body().split("\n");
+            assertEquals(2, lines.length);
+            assertArrayEquals(net.answer(new double[] {0,1}), parse(lines[0]), 1e-12);
+            assertArrayEquals(net.answer(new double[] {1,1}), parse(lines[1]), 1e-12);
+        }
+    }
+
+    @Test
+    public void rejectsMalformedInput() throws Exception
+    {
+        try(InferenceServer server = new InferenceServer.Builder()
+                .withNetwork(net)
+                .build())
+        {
+            assertEquals(400, post(server, "0,1,1\n").statusCode());
+            assertEquals(400, post(server, "zero,one\n").statusCode());
+        }
+    }
+
+    @Test
+    public void concurrentRequestsShareBatches() throws Exception
+    {
+        final int requests = 200;
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try(InferenceServer server = new InferenceServer.Builder()
+                .withNetwork(net)
+                .withMaxBatchSize(32)
+                .withMaxWait(Duration.ofMillis(5))
+                .build())
+        {
+            List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+            for(int i=0; i<requests; i++)
+            {
+                final String body = (i%2)+","+(i/2%2)+"\n";
+                responses.add(clients.submit(()->post(server, body)));
+            }
+            for(int i=0; i<requests; i++)
+            {
+                HttpResponse<String> response = responses.get(i).get();
+                assertEquals(200, response.statusCode());
+                assertArrayEquals(
+                    net.answer(new double[] {i%2, i/2%2}),
+                    parse(response.body().strip()),
+                    1e-12);
+            }
+            assertEquals(requests, server.inputs());
+            assertTrue(server.batches() <= requests);
+        }
+        finally
+        {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectsMoreInputsThanTheQueueHolds() throws Exception
+    {
+        try(InferenceServer server = new InferenceServer.Builder()
+                .withNetwork(net)
+                .withQueueCapacity(2)
+                .build())
+        {
+            assertEquals(503, post(server, "0,0\n0,1\n1,0\n").statusCode());
+            assertEquals(200, post(server, "0,0\n0,1\n").statusCode());
+        }
+    }
+
+    @Test
+    public void timesOutSlowAnswers() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+        try(InferenceServer server = new InferenceServer.Builder()
+                .withNetwork(()->{
+                    // the first call is the handler's width check
+                    if(calls.incrementAndGet() > 1)
+                    {
+                        try { Thread.sleep(500); }
+                        catch(InterruptedException e) {}
+                    }
+                    return net;
+                })
+                .withResponseTimeout(Duration.ofMillis(50))
+                .build())
+        {
+            assertEquals(504, post(server, "0,1\n").statusCode());
+        }
+    }
+
+    @Test
+    public void rejectsBodiesOverTheLimit() throws Exception
+    {
+        try(InferenceServer server = new InferenceServer.Builder()
+                .withNetwork(()->net)
+                .withMaxRequestBytes(8)
+                .build())
+        {
+            assertEquals(413, post(server, "0,1\n1,0\n0,0\n").statusCode());
+            assertEquals(200, post(server, "0,1\n").statusCode());
+        }
+    }
+
+    @Test
+    public void dropsInputsThatTimedOut() throws Exception
+    {
+        try(InferenceServer server = new InferenceServer.Builder()
+                .withNetwork(()->{
+                    // only batches are slow, not the handlers' width checks
+                    if(Thread.currentThread().getName().equals("inference-batcher"))
+                    {
+                        try { Thread.sleep(300); }
+                        catch(InterruptedException e) {}
+                    }
+                    return net;
+                })
+                .withResponseTimeout(Duration.ofMillis(50))
+                .build())
+        {
+            // The first input is answered late;
+            // the second waits behind it and expires before its batch.
+            assertEquals(504, post(server, "0,1\n").statusCode());
+            assertEquals(504, post(server, "1,0\n").statusCode());
+            Thread.sleep(600);
+            assertEquals(1, server.inputs());
+        }
+    }
+}